@@ -5,6 +5,7 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Properties;
 import java.util.Map;
 import java.util.HashMap;
@@ -79,6 +80,266 @@ public class SecureLogXConfig {
         return props.getProperty("securelogx.log.file", "application.log");
     }
 
+    /** Token-length bucket bounds used to group SECURE events into ONNX batches. */
+    public int[] getBatchBuckets() {
+        String raw = props.getProperty("securelogx.batch.buckets", "32,64,128,256,512");
+        return Arrays.stream(raw.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .mapToInt(Integer::parseInt)
+                .toArray();
+    }
+
+    /** p99 end-to-end latency (queueing + inference) the adaptive batcher sizes SECURE batches for. */
+    public long getBatchTargetLatencyMs() {
+        return Long.parseLong(props.getProperty("securelogx.batch.targetLatencyMs", "100"));
+    }
+
+    /** Smallest batch the adaptive batcher shrinks to. */
+    public int getBatchMinSize() {
+        return Integer.parseInt(props.getProperty("securelogx.batch.minSize", "1"));
+    }
+
+    /** Largest batch the adaptive batcher grows to under backlog. */
+    public int getBatchMaxSize() {
+        return Integer.parseInt(props.getProperty("securelogx.batch.maxSize", "64"));
+    }
+
+    /** Upper bound on how long a queued SECURE event waits for its batch to fill before it is dispatched anyway. */
+    public long getBatchLingerMs() {
+        return Long.parseLong(props.getProperty("securelogx.batch.lingerMs", "500"));
+    }
+
+    /** If true, messages over the model's 512-token limit are inferred in overlapping windows instead of truncated. */
+    public boolean isSlidingWindowEnabled() {
+        return Boolean.parseBoolean(props.getProperty("securelogx.inference.window.enabled", "true"));
+    }
+
+    /** Tokens shared by consecutive windows of one long message. */
+    public int getWindowOverlap() {
+        return Integer.parseInt(props.getProperty("securelogx.inference.window.overlap", "128"));
+    }
+
+    /** Most model rows (messages or windows) sent to the ONNX session in one run. */
+    public int getMaxBatchRows() {
+        return Integer.parseInt(props.getProperty("securelogx.inference.maxBatchRows", "16"));
+    }
+
+    /**
+     * Concurrent inference workers in CPU_MULTI mode, each with its own ONNX session.
+     * 0 (the default) picks one worker per 4 CPU threads.
+     */
+    public int getInferenceWorkers() {
+        return Integer.parseInt(props.getProperty("securelogx.inference.workers", "0"));
+    }
+
+    /** Longest a writer holds a line for an earlier line of its trace before giving up the gap. */
+    public long getWriterReorderWindowMs() {
+        return Long.parseLong(props.getProperty("securelogx.writer.reorderWindowMs", "500"));
+    }
+
+    /** Writers forget the seq position of traces idle this long. */
+    public long getWriterTraceIdleMs() {
+        return Long.parseLong(props.getProperty("securelogx.writer.traceIdleMs", "60000"));
+    }
+
+    /** Log file appender: CHANNEL (NIO, group commit) or STREAM (the PrintWriter appender). */
+    public String getAppenderType() {
+        return props.getProperty("securelogx.appender.type", "CHANNEL");
+    }
+
+    /** Size of each direct buffer the CHANNEL appender collects lines in. */
+    public int getAppenderBufferBytes() {
+        return Integer.parseInt(props.getProperty("securelogx.appender.bufferBytes", "262144"));
+    }
+
+    /** Buffers per CHANNEL appender; writers wait when all of them are full and not yet written. */
+    public int getAppenderBuffers() {
+        return Integer.parseInt(props.getProperty("securelogx.appender.buffers", "4"));
+    }
+
+    /** Longest a line waits in a partly filled buffer before the group commit writes it. */
+    public long getAppenderCommitIntervalMs() {
+        return Long.parseLong(props.getProperty("securelogx.appender.commitIntervalMs", "5"));
+    }
+
+    /** When the CHANNEL appender fsyncs: NONE, INTERVAL or BATCH (after every group commit). */
+    public String getAppenderFsync() {
+        return props.getProperty("securelogx.appender.fsync", "INTERVAL");
+    }
+
+    /** Under INTERVAL, the longest written lines stay without an fsync. */
+    public long getAppenderFsyncIntervalMs() {
+        return Long.parseLong(props.getProperty("securelogx.appender.fsyncIntervalMs", "1000"));
+    }
+
+    /** How the batcher and writer threads wait on their empty ring buffers: BUSY_SPIN, YIELD or PARK. */
+    public String getRingBufferWaitStrategy() {
+        return props.getProperty("securelogx.ringBuffer.waitStrategy", "PARK");
+    }
+
+    /** Byte budget shared by the batcher and writer hand-offs (estimated heap of queued events and lines). */
+    public long getQueueMaxBytes() {
+        return Long.parseLong(props.getProperty("securelogx.queue.maxBytes", "67108864"));
+    }
+
+    /** Share of the byte budget the batcher's hand-off may fill; the rest is kept for masked lines. */
+    public double getQueueInferenceShare() {
+        return Double.parseDouble(props.getProperty("securelogx.queue.inferenceShare", "0.75"));
+    }
+
+    /** What the batcher and writer hand-offs do when full: BLOCK, DROP_OLDEST, DROP_BY_LEVEL or SPILL. */
+    public String getOverflowPolicy() {
+        return props.getProperty("securelogx.overflow.policy", "BLOCK");
+    }
+
+    /** Longest a producer waits for room under BLOCK (and DROP_BY_LEVEL) before the event is dropped. */
+    public long getOverflowBlockTimeoutMs() {
+        return Long.parseLong(props.getProperty("securelogx.overflow.blockTimeoutMs", "100"));
+    }
+
+    /** Under DROP_BY_LEVEL, levels below this one are dropped at once when a hand-off is full. */
+    public String getOverflowKeepLevel() {
+        return props.getProperty("securelogx.overflow.keepLevel", "SECURE");
+    }
+
+    /** Directory of the encrypted SPILL files, one per hand-off. */
+    public String getOverflowSpillDir() {
+        return props.getProperty("securelogx.overflow.spillDir", "logs/overflow");
+    }
+
+    /** Base64 AES key for the spill files; empty for a per-process key (spills do not survive a restart). */
+    public String getOverflowSpillKey() {
+        return props.getProperty("securelogx.overflow.spillKey", "");
+    }
+
+    /** Largest a SPILL file may grow; events that do not fit are dropped. */
+    public long getOverflowSpillMaxBytes() {
+        return Long.parseLong(props.getProperty("securelogx.overflow.spillMaxBytes", "1073741824"));
+    }
+
+    /** Spilled events are fed back once a hand-off is below this fraction of its capacity. */
+    public double getOverflowDrainBelow() {
+        return Double.parseDouble(props.getProperty("securelogx.overflow.drainBelow", "0.5"));
+    }
+
+    /** Batches each CPU_MULTI pipeline stage may hold queued before the stage feeding it blocks. */
+    public int getPipelineQueueCapacity() {
+        return Integer.parseInt(props.getProperty("securelogx.pipeline.queueCapacity", "4"));
+    }
+
+    /** Threads writing token IDs into input tensors. */
+    public int getPipelineTensorizeThreads() {
+        return Integer.parseInt(props.getProperty("securelogx.pipeline.tensorizeThreads", "1"));
+    }
+
+    /** Threads merging model labels and masking entity spans. */
+    public int getPipelineDecodeThreads() {
+        return Integer.parseInt(props.getProperty("securelogx.pipeline.decodeThreads", "2"));
+    }
+
+    /** Threads rendering masked messages into output lines. */
+    public int getPipelineFormatThreads() {
+        return Integer.parseInt(props.getProperty("securelogx.pipeline.formatThreads", "1"));
+    }
+
+    /**
+     * If true, SECURE messages with no digit, trigger char or keyword skip NER. Off by default until
+     * the gate's recall has been checked on a labelled log corpus.
+     */
+    public boolean isPrefilterEnabled() {
+        return Boolean.parseBoolean(props.getProperty("securelogx.prefilter.enabled", "false"));
+    }
+
+    /** If true, any digit sends a message to NER. */
+    public boolean isPrefilterDigits() {
+        return Boolean.parseBoolean(props.getProperty("securelogx.prefilter.digits", "true"));
+    }
+
+    /** Characters that send a message to NER. */
+    public String getPrefilterChars() {
+        return props.getProperty("securelogx.prefilter.chars", "@\uFF20");
+    }
+
+    /** Comma-separated whole words (case-insensitive) that send a message to NER. */
+    public String getPrefilterKeywords() {
+        return props.getProperty("securelogx.prefilter.keywords", com.securelogx.ner.impl.PiiPrefilter.DEFAULT_KEYWORDS);
+    }
+
+    /** If true, long SECURE messages are only inferred in token windows around pre-filter candidates. */
+    public boolean isCandidateWindowsEnabled() {
+        return Boolean.parseBoolean(props.getProperty("securelogx.inference.candidates.enabled", "false"));
+    }
+
+    /** Tokens of context on either side of a candidate word. */
+    public int getCandidateRadius() {
+        return Integer.parseInt(props.getProperty("securelogx.inference.candidates.radius", "32"));
+    }
+
+    /** Messages up to this many tokens are inferred whole even in candidate mode. */
+    public int getCandidateMinTokens() {
+        return Integer.parseInt(props.getProperty("securelogx.inference.candidates.minTokens", "128"));
+    }
+
+    /** If true, values the model already masked are remembered and masked again without inference. */
+    public boolean isDictionaryEnabled() {
+        return Boolean.parseBoolean(props.getProperty("securelogx.dictionary.enabled", "false"));
+    }
+
+    public int getDictionaryMaxEntries() {
+        return Integer.parseInt(props.getProperty("securelogx.dictionary.maxEntries", "10000"));
+    }
+
+    /** Entries not seen for this long are dropped. */
+    public long getDictionaryTtlMs() {
+        return Long.parseLong(props.getProperty("securelogx.dictionary.ttlMs", "900000"));
+    }
+
+    /** How often the matcher is recompiled from the live entries. */
+    public long getDictionaryRebuildMs() {
+        return Long.parseLong(props.getProperty("securelogx.dictionary.rebuildMs", "2000"));
+    }
+
+    /** Shorter values are not learned, so common short strings are never masked blindly. */
+    public int getDictionaryMinLength() {
+        return Integer.parseInt(props.getProperty("securelogx.dictionary.minLength", "6"));
+    }
+
+    /** Cache mask results of byte-identical messages and collapse duplicates within a batch. */
+    public boolean isResultCacheEnabled() {
+        return Boolean.parseBoolean(props.getProperty("securelogx.resultCache.enabled", "true"));
+    }
+
+    public int getResultCacheMaxEntries() {
+        return Integer.parseInt(props.getProperty("securelogx.resultCache.maxEntries", "10000"));
+    }
+
+    /** Formats the deterministic {@code PatternDetector} looks for, as EntityType names. */
+    public String getDetectorTypes() {
+        return props.getProperty("securelogx.detector.types", "SSN,EMAIL,PHONE,CARD,NPI,IPV4");
+    }
+
+    /** Mask detector formats in messages of every level, not only SECURE ones sent to the model. */
+    public boolean isDetectorAllLevels() {
+        return Boolean.parseBoolean(props.getProperty("securelogx.detector.allLevels", "false"));
+    }
+
+    /** Also mask detector formats in SECURE messages before the model's spans are applied. */
+    public boolean isDetectorFallbackEnabled() {
+        return Boolean.parseBoolean(props.getProperty("securelogx.detector.fallback.enabled", "false"));
+    }
+
+    /** Walk JSON and XML SECURE messages field by field instead of inferring them as flat text. Off by default. */
+    public boolean isStructuredEnabled() {
+        return Boolean.parseBoolean(props.getProperty("securelogx.structured.enabled", "false"));
+    }
+
+    /** Field names ({@code name[:EntityType]}) whose values, and everything nested in them, are masked without inference. */
+    public String getStructuredMaskFields() {
+        return props.getProperty("securelogx.structured.maskFields",
+                "ssn:SSN,email:EMAIL,phone:PHONE,npi:NPI,cardNumber:CARD,creditCard:CARD,address:ADDRESS,dateOfBirth,accountNumber");
+    }
+
     public Map<String, Object> getKafkaProperties() {
         Map<String, Object> map = new HashMap<>();
         for (String name : props.stringPropertyNames()) {
@@ -1,10 +1,15 @@
 package com.securelogx.consumer;
 
 import com.securelogx.config.SecureLogXConfig;
-import com.securelogx.io.SecureFileAppender;
+import com.securelogx.engine.AdaptiveBatcher;
+import com.securelogx.io.LogAppender;
 import com.securelogx.model.LogEvent;
 import com.securelogx.ner.impl.ONNXDynamicInferenceEngine;
+import com.securelogx.ner.impl.LearnedPiiDictionary;
 import com.securelogx.ner.impl.ParallelTokenizer;
+import com.securelogx.ner.impl.PatternDetector;
+import com.securelogx.ner.impl.PiiPrefilter;
+import com.securelogx.util.LogLineEncoder;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
@@ -19,15 +24,22 @@ import java.util.concurrent.TimeUnit;
  * Kafka consumer that masks SECURE-level messages and writes all logs to a file.
  * <p>
  * Subscribes to a Kafka topic, batches SECURE events for NER masking, and
- * outputs both masked and unmasked records to disk.
+ * outputs both masked and unmasked records to disk. Batch size and poll timeout
+ * follow the same {@link AdaptiveBatcher} policy as the in-process engine.
  */
 public class MaskingConsumer {
-    private static final int BATCH_SIZE = 8;
+    private static final String MESSAGE_FIELD = " message=\"";
+
     private final KafkaConsumer<String, String> consumer;
-    private final SecureFileAppender appender;
+    private final LogAppender appender;
     private final ParallelTokenizer tokenizer;
     private final ONNXDynamicInferenceEngine engine;
     private final SecureLogXConfig config;
+    private final AdaptiveBatcher batchPolicy;
+    private final PiiPrefilter prefilter;
+    private final PatternDetector detector;
+    private final LearnedPiiDictionary dictionary;
+    private long batchStartedAt;
 
     public MaskingConsumer(String env) throws Exception {
         this.config = new SecureLogXConfig(env);
@@ -52,33 +64,44 @@ public class MaskingConsumer {
         this.consumer.subscribe(Collections.singletonList(topic));
 
         // File writer and NER engine
-        this.appender  = new SecureFileAppender(config.getLogFilePath());
-        this.tokenizer = new ParallelTokenizer(config.getTokenizerPath());
+        this.appender  = LogAppender.open(config.getLogFilePath(), config);
+        this.tokenizer = new ParallelTokenizer(config.getTokenizerPath(), config.getMaxCpuThreads());
         this.engine    = new ONNXDynamicInferenceEngine(config.getModelPath(), config);
+        this.batchPolicy = new AdaptiveBatcher(config);
+        this.prefilter = new PiiPrefilter(config);
+        this.detector = config.isDetectorAllLevels() ? new PatternDetector(config) : null;
+        this.dictionary = config.isDictionaryEnabled() ? new LearnedPiiDictionary(config) : null;
+        if (dictionary != null) {
+            engine.setEntityListener(dictionary::learn);
+        }
     }
 
     /**
      * Starts the polling loop, processing messages until interrupted.
      */
     public void run() {
-        List<LogEvent> secureBatch = new ArrayList<>(BATCH_SIZE);
+        List<LogEvent> secureBatch = new ArrayList<>();
         try {
             while (true) {
-                ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(500));
+                // Records are only committed after the batch is written, so the poll wait is the linger
+                ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(Math.max(1, batchPolicy.getLingerMs())));
+                batchPolicy.observeQueueDepth(records.count());
                 for (ConsumerRecord<String, String> rec : records) {
-                    LogEvent event = LogEvent.fromRaw(rec.value());
-                    if (event.requiresNER()) {
-                        secureBatch.add(event);
-                        if (secureBatch.size() >= BATCH_SIZE) {
-                            flushSecureBatch(secureBatch);
-                        }
-                    } else {
-                        appender.write(rec.value());
+                    try {
+                        route(rec.value(), secureBatch);
+                    } catch (Exception e) {
+                        // One bad record must not stop masking; it is not written, so nothing leaks unmasked
+                        System.err.println("[ERROR] Skipping unreadable record at partition " + rec.partition()
+                                + " offset " + rec.offset() + ": " + e);
                     }
                 }
                 if (!secureBatch.isEmpty()) {
                     flushSecureBatch(secureBatch);
                 }
+                // Offsets are committed only once the lines are in the file (and synced under fsync=BATCH)
+                if (!records.isEmpty()) {
+                    appender.flush();
+                }
                 consumer.commitSync();
             }
         } catch (Exception e) {
@@ -88,9 +111,56 @@ public class MaskingConsumer {
         }
     }
 
+    /** Writes a record that needs no model masking at once; adds the others to {@code secureBatch}. */
+    private void route(String raw, List<LogEvent> secureBatch) {
+        LogEvent event = LogEvent.fromRaw(raw);
+        if (!event.requiresNER() || !prefilter.mayContainPii(event.getMessage())) {
+            String masked = detector != null
+                    ? detector.mask(event.getMessage(), event.shouldShowLastFour())
+                    : event.getMessage();
+            appender.write(withMessage(raw, event, masked));
+            return;
+        }
+        // Values the model already found: swap the masked message into the raw line, or pre-mask and infer the rest
+        LearnedPiiDictionary.Match known = dictionary != null
+                ? dictionary.lookup(event.getMessage(), event.shouldShowLastFour(), prefilter)
+                : null;
+        if (known != null) {
+            if (known.isCovered()) {
+                appender.write(withMessage(raw, event, known.getMasked()));
+                return;
+            }
+            event = event.withMessage(known.getMasked());
+        }
+        if (secureBatch.isEmpty()) {
+            batchStartedAt = System.currentTimeMillis();
+        }
+        secureBatch.add(event);
+        if (secureBatch.size() >= batchPolicy.getBatchSize()) {
+            flushSecureBatch(secureBatch);
+        }
+    }
+
+    /** {@code raw} with the message of {@code event} swapped for {@code masked}; {@code raw} itself if unchanged. */
+    private static String withMessage(String raw, LogEvent event, String masked) {
+        if (masked == event.getMessage()) {
+            return raw;
+        }
+        int at = raw.indexOf(MESSAGE_FIELD);
+        if (at < 0) {
+            return masked; // not in the line layout: the whole line was the message
+        }
+        StringBuilder line = new StringBuilder(raw.length() + 8);
+        line.append(raw, 0, at + MESSAGE_FIELD.length());
+        LogLineEncoder.escape(masked, line);
+        return line.append('"').toString();
+    }
+
     private void flushSecureBatch(List<LogEvent> batch) {
         try {
+            long start = System.currentTimeMillis();
             List<String> masked = engine.runBatch(tokenizer, batch);
+            batchPolicy.recordBatch(start - batchStartedAt, System.currentTimeMillis() - start);
             for (String line : masked) {
                 appender.write(line);
             }
@@ -109,6 +179,8 @@ public class MaskingConsumer {
             consumer.wakeup();
             appender.close();
             engine.shutdown();
+            tokenizer.shutdown();
+            if (dictionary != null) dictionary.close();
         } catch (Exception e) {
             e.printStackTrace();
         }
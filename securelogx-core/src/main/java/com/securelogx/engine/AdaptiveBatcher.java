@@ -0,0 +1,117 @@
+package com.securelogx.engine;
+
+import com.securelogx.config.SecureLogXConfig;
+
+import java.util.Arrays;
+
+/**
+ * Latency-aware batch sizing shared by the in-process batcher and the Kafka {@code MaskingConsumer}.
+ * <p>
+ * Callers report each dispatched SECURE batch: how long its oldest event waited before dispatch,
+ * and how long inference took. Every {@value #ADJUST_EVERY} batches the policy looks at
+ * the p99 of the last {@value #WINDOW} batches and adjusts:
+ * <ul>
+ *   <li><b>batch size</b> – multiplicative decrease when end-to-end p99 (wait + inference) is over
+ *       {@code securelogx.batch.targetLatencyMs}; additive increase when there is a backlog and p99
+ *       has headroom, so heavy load gets larger, more efficient model calls.</li>
+ *   <li><b>linger</b> – half of what the target leaves after inference p99, capped by
+ *       {@code securelogx.batch.lingerMs}. Under light load events wait only as long as the SLO
+ *       allows instead of a fixed half second.</li>
+ * </ul>
+ * Thread-safe: batches may be reported from several inference workers.
+ */
+public class AdaptiveBatcher {
+
+    static final int WINDOW = 256;
+    static final int ADJUST_EVERY = 16;
+
+    private final long targetLatencyMs;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long maxLingerMs;
+
+    private volatile int batchSize;
+    private volatile long lingerMs;
+    private volatile int queueDepth;
+
+    private final long[] totalMs = new long[WINDOW];
+    private final long[] inferenceMs = new long[WINDOW];
+    private int next;
+    private int samples;
+    private int sinceAdjust;
+
+    public AdaptiveBatcher(SecureLogXConfig config) {
+        this(config.getBatchTargetLatencyMs(), config.getBatchMinSize(), config.getBatchMaxSize(), config.getBatchLingerMs());
+    }
+
+    public AdaptiveBatcher(long targetLatencyMs, int minBatchSize, int maxBatchSize, long maxLingerMs) {
+        this.targetLatencyMs = Math.max(1, targetLatencyMs);
+        this.minBatchSize = Math.max(1, minBatchSize);
+        this.maxBatchSize = Math.max(this.minBatchSize, maxBatchSize);
+        this.maxLingerMs = Math.max(0, maxLingerMs);
+        this.batchSize = Math.min(this.maxBatchSize, Math.max(this.minBatchSize, 8));
+        this.lingerMs = Math.min(this.maxLingerMs, this.targetLatencyMs / 2);
+    }
+
+    /** Events to put in the next batch. */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /** Longest time the oldest event of a partial batch should wait before it is dispatched anyway. */
+    public long getLingerMs() {
+        return lingerMs;
+    }
+
+    public long getTargetLatencyMs() {
+        return targetLatencyMs;
+    }
+
+    /** Latest number of SECURE events waiting to be batched (queued, bucketed or polled). */
+    public void observeQueueDepth(int depth) {
+        queueDepth = depth;
+    }
+
+    /**
+     * Reports one dispatched batch.
+     *
+     * @param waitedMs    time its oldest event spent waiting before dispatch
+     * @param inferenceMs time spent in inference and masking
+     */
+    public synchronized void recordBatch(long waitedMs, long inferenceMs) {
+        this.totalMs[next] = waitedMs + inferenceMs;
+        this.inferenceMs[next] = inferenceMs;
+        next = (next + 1) % WINDOW;
+        samples = Math.min(WINDOW, samples + 1);
+        if (++sinceAdjust >= ADJUST_EVERY) {
+            sinceAdjust = 0;
+            adjust();
+        }
+    }
+
+    private void adjust() {
+        long totalP99 = p99(totalMs, samples);
+        long inferenceP99 = p99(inferenceMs, samples);
+
+        int size = batchSize;
+        if (totalP99 > targetLatencyMs) {
+            size = Math.max(minBatchSize, size * 3 / 4);
+        } else if (queueDepth >= size && totalP99 * 5 < targetLatencyMs * 4) {
+            size = Math.min(maxBatchSize, size + Math.max(1, size / 4));
+        }
+        batchSize = size;
+        lingerMs = Math.min(maxLingerMs, Math.max(0, targetLatencyMs - inferenceP99) / 2);
+    }
+
+    private static long p99(long[] values, int n) {
+        long[] sorted = Arrays.copyOf(values, n);
+        Arrays.sort(sorted);
+        return sorted[Math.min(n - 1, (int) Math.ceil(n * 0.99) - 1)];
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveBatcher{batchSize=" + batchSize + ", lingerMs=" + lingerMs
+                + ", targetLatencyMs=" + targetLatencyMs + ", queueDepth=" + queueDepth + '}';
+    }
+}
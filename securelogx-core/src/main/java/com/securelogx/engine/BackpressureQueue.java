@@ -0,0 +1,427 @@
+package com.securelogx.engine;
+
+import com.securelogx.config.SecureLogXConfig;
+import com.securelogx.model.LogEvent;
+import com.securelogx.model.LogLevel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link RingBuffer} hand-off with an explicit {@link OverflowPolicy} for events that arrive
+ * while it is full, and exact counters for each policy's outcome, so queues can be sized from
+ * what actually happened under load.
+ * <p>
+ * Producers call {@link #offer}; the single consumer uses {@link #poll()}, {@link #poll(long, TimeUnit)}
+ * and {@link #drainTo}. Under {@code SPILL}, the consumer moves spilled events back into the ring
+ * whenever it has drained below {@code securelogx.overflow.drainBelow} of its capacity (slots and
+ * bytes); while any
+ * are spilled, new events are spilled behind them so the hand-off stays in arrival order.
+ * <p>
+ * The ring's slot count is only a ceiling: with a {@link MemoryAccountant}, the queue is full as
+ * soon as the estimated bytes of its elements would exceed its share of the global budget.
+ * Spilled elements live on disk and are not accounted until they are fed back.
+ */
+public final class BackpressureQueue<E> {
+
+    /** Serializes spilled elements and estimates their heap size. */
+    public interface Codec<E> {
+        /** Estimated heap retained by a queued {@code element}, in bytes. */
+        long weigh(E element);
+
+        void write(E element, DataOutputStream out) throws IOException;
+
+        E read(DataInputStream in) throws IOException;
+    }
+
+    /** SECURE events on their way to the batcher. */
+    public static final Codec<LogEvent> EVENTS = new Codec<LogEvent>() {
+        @Override
+        public long weigh(LogEvent e) {
+            // event + its id string, message and traceId
+            return 120 + MemoryAccountant.sizeOf(e.getMessage()) + MemoryAccountant.sizeOf(e.getTraceId());
+        }
+
+        @Override
+        public void write(LogEvent e, DataOutputStream out) throws IOException {
+            out.writeByte(e.getLevel().ordinal());
+            out.writeBoolean(e.shouldShowLastFour());
+            out.writeInt(e.getSequenceNumber());
+            out.writeUTF(e.getTraceId());
+            byte[] message = e.getMessage().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(message.length);
+            out.write(message);
+        }
+
+        @Override
+        public LogEvent read(DataInputStream in) throws IOException {
+            LogLevel level = LogLevel.values()[in.readByte()];
+            boolean showLastFour = in.readBoolean();
+            int seq = in.readInt();
+            String traceId = in.readUTF();
+            byte[] message = new byte[in.readInt()];
+            in.readFully(message);
+            return new LogEvent(new String(message, StandardCharsets.UTF_8), level, showLastFour, traceId, seq);
+        }
+    };
+
+    /** Formatted lines on their way to a writer. */
+    public static final Codec<TracedLine> LINES = new Codec<TracedLine>() {
+        @Override
+        public long weigh(TracedLine line) {
+            return 24 + MemoryAccountant.sizeOf(line.line); // traceId is shared with the event
+        }
+
+        @Override
+        public void write(TracedLine line, DataOutputStream out) throws IOException {
+            out.writeUTF(line.traceId != null ? line.traceId : "");
+            out.writeInt(line.seq);
+            byte[] bytes = line.line.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public TracedLine read(DataInputStream in) throws IOException {
+            String traceId = in.readUTF();
+            int seq = in.readInt();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new TracedLine(traceId, seq, new String(bytes, StandardCharsets.UTF_8));
+        }
+    };
+
+    private final String name;
+    private final RingBuffer<E> ring;
+    private final OverflowPolicy policy;
+    private final long blockTimeoutNanos;
+    private final LogLevel keepLevel;
+    private final int drainBelow;
+    private final long drainBelowBytes;
+    private final Codec<E> codec;
+    private final SpillFile spill;
+    private final MemoryAccountant accountant;
+    private final long byteLimit;
+    private final AtomicLong bytes = new AtomicLong();
+    private final List<E> drainScratch = new ArrayList<>(); // consumer thread only
+
+    private final LongAdder offered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder blockedNanos = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder unspilled = new LongAdder();
+    private volatile boolean spillFailed;
+    private volatile boolean spillFull;
+
+    /**
+     * @param name       identifies the queue in logs and names its spill file
+     *                   ({@code securelogx.overflow.spillDir/<name>.spill})
+     * @param capacity   ring slots, the most elements the queue holds whatever their size
+     * @param accountant global byte budget, or null to bound the queue by {@code capacity} only
+     * @param share      share of the budget this queue may fill, 0 to 1
+     * @param codec      weighs elements and serializes spilled ones
+     */
+    public BackpressureQueue(String name, int capacity, WaitStrategy waitStrategy, SecureLogXConfig config,
+                             MemoryAccountant accountant, double share, Codec<E> codec) {
+        this.name = name;
+        this.accountant = accountant;
+        this.byteLimit = accountant != null ? accountant.limit(share) : Long.MAX_VALUE;
+        this.policy = OverflowPolicy.parse(config.getOverflowPolicy());
+        this.ring = new RingBuffer<>(capacity, waitStrategy, policy == OverflowPolicy.DROP_OLDEST);
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getOverflowBlockTimeoutMs());
+        this.keepLevel = LogLevel.valueOf(config.getOverflowKeepLevel().trim().toUpperCase(java.util.Locale.ROOT));
+        this.drainBelow = (int) Math.max(1, ring.capacity() * config.getOverflowDrainBelow());
+        this.drainBelowBytes = accountant != null ? (long) (byteLimit * config.getOverflowDrainBelow()) : Long.MAX_VALUE;
+        this.codec = codec;
+        SpillFile file = null;
+        if (policy == OverflowPolicy.SPILL) {
+            try {
+                Path path = Paths.get(config.getOverflowSpillDir(), name + ".spill");
+                file = new SpillFile(path, config.getOverflowSpillKey(), config.getOverflowSpillMaxBytes());
+            } catch (Exception e) {
+                System.err.println("[ERROR] Cannot open the overflow spill file for " + name + ", events will be dropped when full");
+                e.printStackTrace();
+            }
+        }
+        this.spill = file;
+    }
+
+    /**
+     * Hands {@code element} to the consumer, applying the overflow policy if the queue is full.
+     *
+     * @param level priority of the element, for {@code DROP_BY_LEVEL}
+     * @return {@code false} if the element was dropped
+     */
+    public boolean offer(E element, LogLevel level) {
+        offered.increment();
+        if (spill != null && spill.pending() > 0) {
+            return spill(element);
+        }
+        long weight = codec.weigh(element);
+        if (enqueue(element, weight)) {
+            return true;
+        }
+        switch (policy) {
+            case DROP_OLDEST:
+                while (!enqueue(element, weight)) {
+                    E oldest = ring.evictOldest();
+                    if (oldest != null) {
+                        released(oldest);
+                        evicted.increment();
+                    } else if (ring.isEmpty()) {
+                        // Nothing of ours to evict: the budget is held by the other queues
+                        dropped.increment();
+                        return false;
+                    } else {
+                        Thread.onSpinWait(); // oldest slot is still being published
+                    }
+                }
+                return true;
+            case DROP_BY_LEVEL:
+                if (level.ordinal() < keepLevel.ordinal()) {
+                    dropped.increment();
+                    return false;
+                }
+                return block(element, weight);
+            case SPILL:
+                return spill(element);
+            case BLOCK:
+            default:
+                return block(element, weight);
+        }
+    }
+
+    /** Waits for room up to the block timeout, backing off from spinning to parking. */
+    private boolean block(E element, long weight) {
+        blocked.increment();
+        long start = System.nanoTime();
+        try {
+            for (int attempt = 0; ; attempt++) {
+                if (enqueue(element, weight)) {
+                    return true;
+                }
+                if (System.nanoTime() - start >= blockTimeoutNanos) {
+                    timedOut.increment();
+                    dropped.increment();
+                    return false;
+                }
+                if (attempt < WaitStrategy.SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else if (attempt < WaitStrategy.YIELD_TRIES) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(50_000);
+                }
+            }
+        } finally {
+            blockedNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /** Reserves {@code weight} in the budget and queues {@code element}; {@code false} if either is full. */
+    private boolean enqueue(E element, long weight) {
+        if (accountant != null && !accountant.tryReserve(weight, byteLimit)) {
+            return false;
+        }
+        if (!ring.offer(element)) {
+            if (accountant != null) {
+                accountant.release(weight);
+            }
+            return false;
+        }
+        bytes.addAndGet(weight);
+        return true;
+    }
+
+    /** Returns the budget held by an element that left the ring. */
+    private E released(E element) {
+        if (element != null) {
+            long weight = codec.weigh(element);
+            bytes.addAndGet(-weight);
+            if (accountant != null) {
+                accountant.release(weight);
+            }
+        }
+        return element;
+    }
+
+    private boolean spill(E element) {
+        if (spill == null) {
+            dropped.increment();
+            return false;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            codec.write(element, new DataOutputStream(bytes));
+            if (!spill.append(bytes.toByteArray())) {
+                dropped.increment();
+                if (!spillFull) {
+                    spillFull = true;
+                    System.err.println("[ERROR] Overflow spill file for " + name + " is full, dropping spilled events");
+                }
+                return false;
+            }
+            spilled.increment();
+            return true;
+        } catch (Exception e) {
+            dropped.increment();
+            if (!spillFailed) {
+                spillFailed = true;
+                System.err.println("[ERROR] Overflow spill failed for " + name + ", dropping spilled events");
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    /** Moves spilled elements back into the ring while it is below the drain threshold. */
+    private void unspill() {
+        if (spill == null || spill.pending() == 0) {
+            return;
+        }
+        try {
+            while (ring.size() < drainBelow && bytes.get() < drainBelowBytes) {
+                byte[] record = spill.peek();
+                if (record == null) {
+                    return;
+                }
+                E element = codec.read(new DataInputStream(new ByteArrayInputStream(record)));
+                if (!enqueue(element, codec.weigh(element))) {
+                    return; // no room after all; it stays at the head for the next round
+                }
+                spill.remove();
+                unspilled.increment();
+            }
+        } catch (Exception e) {
+            System.err.println("[ERROR] Reading the overflow spill file failed for " + name + ", skipping the record");
+            e.printStackTrace();
+            try {
+                if (spill.remove()) { // an unreadable head must not hold back the records behind it
+                    dropped.increment();
+                }
+            } catch (IOException ignored) {
+                // Retried on the next poll
+            }
+        }
+    }
+
+    /** Next element, or {@code null} if none is queued. Consumer thread only. */
+    public E poll() {
+        unspill();
+        return released(ring.poll());
+    }
+
+    /** Next element, waiting up to {@code timeout}; {@code null} on timeout. Consumer thread only. */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        unspill();
+        return released(ring.poll(timeout, unit));
+    }
+
+    /** Moves up to {@code max} queued elements into {@code sink}; returns how many. Consumer thread only. */
+    public int drainTo(Collection<? super E> sink, int max) {
+        unspill();
+        int n = ring.drainTo(drainScratch, max);
+        for (int i = 0; i < n; i++) {
+            released(drainScratch.get(i));
+        }
+        sink.addAll(drainScratch);
+        drainScratch.clear();
+        return n;
+    }
+
+    /** Queued elements, spilled ones included. */
+    public int size() {
+        return ring.size() + (spill != null ? (int) spill.pending() : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** Closes the spill file, deleting it if nothing is left in it. */
+    public void close() {
+        if (spill == null) {
+            return;
+        }
+        try {
+            spill.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** Estimated bytes of the elements in the ring. */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    public long getOffered() {
+        return offered.sum();
+    }
+
+    /** Arriving events discarded: below the keep level, after a block timeout, or when a spill failed or was full. */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /** Queued events discarded to make room for newer ones ({@code DROP_OLDEST}). */
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    /** Offers that found the queue full and waited ({@code BLOCK}, {@code DROP_BY_LEVEL}). */
+    public long getBlocked() {
+        return blocked.sum();
+    }
+
+    /** Total time producers spent waiting for room. */
+    public long getBlockedNanos() {
+        return blockedNanos.sum();
+    }
+
+    /** Waits that ended in a drop; included in {@link #getDropped()}. */
+    public long getTimedOut() {
+        return timedOut.sum();
+    }
+
+    public long getSpilled() {
+        return spilled.sum();
+    }
+
+    /** Spilled events fed back into the queue. */
+    public long getUnspilled() {
+        return unspilled.sum();
+    }
+
+    public long getSpillPending() {
+        return spill != null ? spill.pending() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s policy=%s bytes=%d offered=%d dropped=%d evicted=%d blocked=%d blockedMs=%.1f timedOut=%d spilled=%d unspilled=%d spillPending=%d",
+                name, policy, getBytes(), getOffered(), getDropped(), getEvicted(), getBlocked(), getBlockedNanos() / 1e6,
+                getTimedOut(), getSpilled(), getUnspilled(), getSpillPending());
+    }
+}
@@ -0,0 +1,149 @@
+package com.securelogx.engine;
+
+import com.securelogx.model.LogEvent;
+import com.securelogx.ner.TokenizedInput;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Groups tokenized SECURE events into sequence-length buckets (e.g. 32/64/128/256/512 tokens)
+ * before they reach the model, so one stack-trace-sized message doesn't make the short
+ * messages in its batch pay for hundreds of padding tokens.
+ * <p>
+ * A bucket is dispatched when it holds a full batch, or when its oldest event has waited
+ * for the linger time; both come from the {@link AdaptiveBatcher} on every call. Only the
+ * batcher thread touches an instance; the attached {@link PaddingStats} can be read from anywhere.
+ */
+final class LengthBucketer {
+
+    /** One dispatched bucket batch; {@code encoded.get(i)} holds the tokens of {@code events.get(i)}. */
+    static final class Batch {
+        final int bucket;
+        final List<LogEvent> events;
+        final List<TokenizedInput> encoded;
+        final long oldestArrival;
+
+        Batch(int bucket, List<LogEvent> events, List<TokenizedInput> encoded, long oldestArrival) {
+            this.bucket = bucket;
+            this.events = events;
+            this.encoded = encoded;
+            this.oldestArrival = oldestArrival;
+        }
+    }
+
+    private static final class Entry {
+        final LogEvent event;
+        final TokenizedInput encoded;
+        final long arrivedAt;
+
+        Entry(LogEvent event, TokenizedInput encoded, long arrivedAt) {
+            this.event = event;
+            this.encoded = encoded;
+            this.arrivedAt = arrivedAt;
+        }
+    }
+
+    private final int[] bounds;
+    private final AdaptiveBatcher policy;
+    private final List<ArrayDeque<Entry>> buckets;
+    private final PaddingStats stats;
+    private volatile int pending; // written by the batcher only
+
+    LengthBucketer(int[] bounds, AdaptiveBatcher policy) {
+        this.bounds = bounds.clone();
+        Arrays.sort(this.bounds);
+        this.policy = policy;
+        this.buckets = new ArrayList<>(this.bounds.length);
+        for (int i = 0; i < this.bounds.length; i++) {
+            buckets.add(new ArrayDeque<>());
+        }
+        this.stats = new PaddingStats(this.bounds);
+    }
+
+    PaddingStats stats() {
+        return stats;
+    }
+
+    void add(LogEvent event, TokenizedInput encoded, long now) {
+        buckets.get(bucketFor(encoded.length())).add(new Entry(event, encoded, now));
+        pending++;
+    }
+
+    boolean hasPending() {
+        return pending > 0;
+    }
+
+    int pending() {
+        return pending;
+    }
+
+    /** Milliseconds until the next bucket is due (0 if one is already due); {@code Long.MAX_VALUE} when empty. */
+    long millisUntilDue(long now) {
+        int batchSize = policy.getBatchSize();
+        long lingerMs = policy.getLingerMs();
+        long wait = Long.MAX_VALUE;
+        for (ArrayDeque<Entry> q : buckets) {
+            if (q.isEmpty()) {
+                continue;
+            }
+            if (q.size() >= batchSize) {
+                return 0;
+            }
+            wait = Math.min(wait, Math.max(0, q.peek().arrivedAt + lingerMs - now));
+        }
+        return wait;
+    }
+
+    /**
+     * Removes and returns up to one batch from the due bucket whose head has waited longest,
+     * or {@code null} if no bucket is due.
+     *
+     * @param flushAll treat every non-empty bucket as due (shutdown drain)
+     */
+    Batch pollReady(long now, boolean flushAll) {
+        int batchSize = policy.getBatchSize();
+        long lingerMs = policy.getLingerMs();
+        int chosen = -1;
+        long oldest = Long.MAX_VALUE;
+        for (int b = 0; b < buckets.size(); b++) {
+            ArrayDeque<Entry> q = buckets.get(b);
+            if (q.isEmpty()) {
+                continue;
+            }
+            long head = q.peek().arrivedAt;
+            boolean due = flushAll || q.size() >= batchSize || now - head >= lingerMs;
+            if (due && head < oldest) {
+                oldest = head;
+                chosen = b;
+            }
+        }
+        if (chosen < 0) {
+            return null;
+        }
+
+        ArrayDeque<Entry> q = buckets.get(chosen);
+        int n = Math.min(batchSize, q.size());
+        List<LogEvent> events = new ArrayList<>(n);
+        List<TokenizedInput> encoded = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Entry e = q.poll();
+            events.add(e.event);
+            encoded.add(e.encoded);
+        }
+        pending -= n;
+        stats.recordBatch(chosen, n); // tokens are recorded once the tensors are built
+        return new Batch(chosen, events, encoded, oldest);
+    }
+
+    /** Smallest bucket whose bound fits {@code tokens}; overlong inputs share the last bucket. */
+    private int bucketFor(int tokens) {
+        int idx = Arrays.binarySearch(bounds, tokens);
+        if (idx < 0) {
+            idx = -idx - 1;
+        }
+        return Math.min(idx, bounds.length - 1);
+    }
+}
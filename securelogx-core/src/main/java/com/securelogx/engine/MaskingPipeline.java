@@ -0,0 +1,146 @@
+package com.securelogx.engine;
+
+import com.securelogx.config.SecureLogXConfig;
+import com.securelogx.ner.impl.InferenceJob;
+import com.securelogx.ner.impl.ONNXDynamicInferenceEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Stage graph for batches leaving the batcher (which is the tokenize stage):
+ * <pre>
+ *   tensorize → infer → decode/mask → format → sink (writer queues)
+ * </pre>
+ * Every stage has its own threads and a bounded inbound queue of {@link InferenceJob}s, so
+ * consecutive batches overlap: while one runs on the model, the next is being tensorized and the
+ * previous one masked and formatted. A full queue blocks the stage feeding it, which pushes back
+ * up to the batcher.
+ * <p>
+ * {@link #close()} drains the stages front to back, so every submitted job reaches the sink.
+ */
+final class MaskingPipeline {
+
+    private final List<Stage> stages = new ArrayList<>();
+
+    /**
+     * @param inferThreads one per ONNX session of {@code engine}
+     * @param sink         called on a format thread with each finished job, including failed ones
+     */
+    MaskingPipeline(ONNXDynamicInferenceEngine engine, SecureLogXConfig config, int inferThreads,
+                    Consumer<InferenceJob> sink) {
+        int capacity = Math.max(1, config.getPipelineQueueCapacity());
+        Stage format = new Stage("Format", config.getPipelineFormatThreads(), capacity, job -> {
+            engine.format(job);
+            sink.accept(job);
+        }, null);
+        Stage decode = new Stage("Decode", config.getPipelineDecodeThreads(), capacity, engine::decode, format);
+        Stage infer = new Stage("Inference", inferThreads, capacity, engine::infer, decode);
+        Stage tensorize = new Stage("Tensorize", config.getPipelineTensorizeThreads(), capacity, engine::tensorize, infer);
+        stages.add(tensorize);
+        stages.add(infer);
+        stages.add(decode);
+        stages.add(format);
+        stages.forEach(Stage::start);
+    }
+
+    /** Hands a batch to the first stage, blocking while that stage's queue is full. */
+    void submit(InferenceJob job) throws InterruptedException {
+        stages.get(0).put(job);
+    }
+
+    /** True when no job is queued or running in any stage. */
+    boolean isIdle() {
+        // Front to back: a job enters the next stage before it leaves this one
+        for (Stage stage : stages) {
+            if (stage.inFlight.get() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Processes every submitted job, then stops all stage threads. */
+    void close() throws InterruptedException {
+        for (Stage stage : stages) {
+            stage.close();
+        }
+    }
+
+    private static final class Stage {
+        private final String name;
+        private final int threads;
+        private final BlockingQueue<InferenceJob> queue;
+        private final Consumer<InferenceJob> work;
+        private final Stage next;
+        private final List<Thread> workers = new ArrayList<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile boolean closing;
+
+        Stage(String name, int threads, int capacity, Consumer<InferenceJob> work, Stage next) {
+            this.name = name;
+            this.threads = Math.max(1, threads);
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.work = work;
+            this.next = next;
+        }
+
+        void put(InferenceJob job) throws InterruptedException {
+            inFlight.incrementAndGet();
+            try {
+                queue.put(job);
+            } catch (InterruptedException e) {
+                inFlight.decrementAndGet();
+                throw e;
+            }
+        }
+
+        void start() {
+            for (int i = 0; i < threads; i++) {
+                Thread t = new Thread(this::loop, "SecureLogX" + name + "-" + i);
+                t.start();
+                workers.add(t);
+            }
+        }
+
+        private void loop() {
+            while (!closing || !queue.isEmpty()) {
+                InferenceJob job;
+                try {
+                    job = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (job == null) {
+                    continue;
+                }
+                try {
+                    work.accept(job);
+                    if (next != null) {
+                        next.put(job);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        }
+
+        void close() throws InterruptedException {
+            closing = true;
+            for (Thread t : workers) {
+                t.join();
+            }
+        }
+    }
+}
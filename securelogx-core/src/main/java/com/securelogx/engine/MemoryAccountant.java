@@ -0,0 +1,121 @@
+package com.securelogx.engine;
+
+import com.securelogx.config.SecureLogXConfig;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Global byte budget shared by the engine's hand-off queues, so what bounds them is the heap their
+ * queued events and lines retain rather than how many there are: 10k stack traces and 10k short
+ * messages are very different loads.
+ * <p>
+ * A {@link BackpressureQueue} reserves an element's estimated size before queuing it and releases
+ * it when the element leaves; a refused reservation counts as a full queue and triggers the
+ * queue's overflow policy. Each queue reserves against its own limit, a share of the budget: the
+ * batcher's hand-off is held to {@code securelogx.queue.inferenceShare} of it, so a backlog of
+ * unmasked events can never take the room that masked lines need to reach the writers.
+ * <p>
+ * Sizes are estimates (headers plus two bytes per char), not measurements. The accountant is
+ * exported over JMX as {@code com.securelogx:type=MemoryAccountant}.
+ */
+public class MemoryAccountant implements MemoryAccountantMBean {
+
+    public static final String OBJECT_NAME = "com.securelogx:type=MemoryAccountant";
+
+    private final long maxBytes;
+    private final AtomicLong used = new AtomicLong();
+    private final AtomicLong peak = new AtomicLong();
+    private final LongAdder rejected = new LongAdder();
+
+    public MemoryAccountant(SecureLogXConfig config) {
+        this(config.getQueueMaxBytes());
+    }
+
+    public MemoryAccountant(long maxBytes) {
+        this.maxBytes = Math.max(1, maxBytes);
+    }
+
+    /** Reserves {@code bytes} if the total stays within {@code limit}; {@code false} otherwise. */
+    public boolean tryReserve(long bytes, long limit) {
+        long bound = Math.min(limit, maxBytes);
+        while (true) {
+            long current = used.get();
+            long next = current + bytes;
+            // An element larger than the whole limit is still admitted into an empty budget
+            if (next > bound && current > 0) {
+                rejected.increment();
+                return false;
+            }
+            if (used.compareAndSet(current, next)) {
+                if (next > peak.get()) {
+                    peak.accumulateAndGet(next, Math::max);
+                }
+                return true;
+            }
+        }
+    }
+
+    public void release(long bytes) {
+        used.addAndGet(-bytes);
+    }
+
+    /** Limit for a queue allowed {@code share} (0 to 1) of the budget. */
+    public long limit(double share) {
+        return (long) (maxBytes * Math.min(1.0, Math.max(0.0, share)));
+    }
+
+    /** Estimated heap retained by a queued string. */
+    public static long sizeOf(String s) {
+        return s == null ? 0 : 40 + 2L * s.length();
+    }
+
+    /** Registers this accountant as a platform MBean, replacing an earlier registration. */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (Exception e) {
+            System.err.println("[ERROR] Could not register the queue memory gauge over JMX");
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public long getUsedBytes() {
+        return used.get();
+    }
+
+    @Override
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public long getPeakBytes() {
+        return peak.get();
+    }
+
+    @Override
+    public double getUtilization() {
+        return (double) used.get() / maxBytes;
+    }
+
+    @Override
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("queues used=%.1fMB max=%.1fMB peak=%.1fMB rejected=%d",
+                getUsedBytes() / 1048576.0, maxBytes / 1048576.0, getPeakBytes() / 1048576.0, getRejected());
+    }
+}
@@ -0,0 +1,20 @@
+package com.securelogx.engine;
+
+/** JMX view of the {@link MemoryAccountant}, registered as {@code com.securelogx:type=MemoryAccountant}. */
+public interface MemoryAccountantMBean {
+
+    /** Bytes currently held by queued events and lines (estimated). */
+    long getUsedBytes();
+
+    /** Budget from {@code securelogx.queue.maxBytes}. */
+    long getMaxBytes();
+
+    /** Highest {@link #getUsedBytes()} since start. */
+    long getPeakBytes();
+
+    /** Used share of the budget, 0 to 1. */
+    double getUtilization();
+
+    /** Reservation attempts refused because the budget (or the queue's share of it) was spent; a blocked producer retries. */
+    long getRejected();
+}
@@ -0,0 +1,32 @@
+package com.securelogx.engine;
+
+import java.util.Locale;
+
+/**
+ * What a {@link BackpressureQueue} does with an event that arrives while it is full.
+ * <ul>
+ *   <li>{@code BLOCK}: the producer waits up to {@code securelogx.overflow.blockTimeoutMs} for
+ *       room, then the event is dropped</li>
+ *   <li>{@code DROP_OLDEST}: the oldest queued event is discarded to make room</li>
+ *   <li>{@code DROP_BY_LEVEL}: events below {@code securelogx.overflow.keepLevel} are dropped at
+ *       once; the others wait as with {@code BLOCK}</li>
+ *   <li>{@code SPILL}: the event is appended to an encrypted local overflow file, which is fed back
+ *       into the queue once it has drained below {@code securelogx.overflow.drainBelow}</li>
+ * </ul>
+ */
+public enum OverflowPolicy {
+    BLOCK,
+    DROP_OLDEST,
+    DROP_BY_LEVEL,
+    SPILL;
+
+    /** Parses a config value, falling back to {@code BLOCK} for unknown names. */
+    public static OverflowPolicy parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (Exception e) {
+            System.err.println("[ERROR] Unknown overflow policy '" + name + "', using BLOCK");
+            return BLOCK;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.securelogx.engine;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Padding-waste counters for length-bucketed ONNX batches.
+ * <p>
+ * For every dispatched batch, records per bucket the real (attended) tokens and the tensor slots
+ * ({@code rows * seqLen}) of the input tensors actually built for it: after dedup and cache hits,
+ * with long messages split into window rows, {@code maxBatchRows} packing and the sequence length
+ * rounded up by the tensor arena. Waste is the share of slots that were padding, i.e. compute
+ * spent on nothing. Written by the batcher and pipeline threads, readable from any thread.
+ */
+public class PaddingStats {
+    private final int[] bucketBounds;
+    private final AtomicLongArray batches;
+    private final AtomicLongArray events;
+    private final AtomicLongArray realTokens;
+    private final AtomicLongArray paddedTokens;
+
+    public PaddingStats(int[] bucketBounds) {
+        this.bucketBounds = bucketBounds.clone();
+        int n = bucketBounds.length;
+        this.batches = new AtomicLongArray(n);
+        this.events = new AtomicLongArray(n);
+        this.realTokens = new AtomicLongArray(n);
+        this.paddedTokens = new AtomicLongArray(n);
+    }
+
+    void recordBatch(int bucket, int eventCount) {
+        batches.incrementAndGet(bucket);
+        events.addAndGet(bucket, eventCount);
+    }
+
+    void recordTokens(int bucket, long real, long padded) {
+        realTokens.addAndGet(bucket, real);
+        paddedTokens.addAndGet(bucket, padded);
+    }
+
+    public int[] getBucketBounds() {
+        return bucketBounds.clone();
+    }
+
+    public long getBatches(int bucket) {
+        return batches.get(bucket);
+    }
+
+    public long getEvents(int bucket) {
+        return events.get(bucket);
+    }
+
+    public long getRealTokens(int bucket) {
+        return realTokens.get(bucket);
+    }
+
+    public long getPaddedTokens(int bucket) {
+        return paddedTokens.get(bucket);
+    }
+
+    /** Fraction of tensor slots in this bucket that were padding (0 when nothing dispatched yet). */
+    public double getWasteRatio(int bucket) {
+        long padded = paddedTokens.get(bucket);
+        return padded == 0 ? 0.0 : 1.0 - (double) realTokens.get(bucket) / padded;
+    }
+
+    /** Fraction of tensor slots across all buckets that were padding. */
+    public double getWasteRatio() {
+        long real = 0;
+        long padded = 0;
+        for (int b = 0; b < bucketBounds.length; b++) {
+            real += realTokens.get(b);
+            padded += paddedTokens.get(b);
+        }
+        return padded == 0 ? 0.0 : 1.0 - (double) real / padded;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("PaddingStats{waste=")
+                .append(String.format("%.3f", getWasteRatio()));
+        for (int b = 0; b < bucketBounds.length; b++) {
+            sb.append(", ≤").append(bucketBounds[b])
+                    .append("=[batches=").append(batches.get(b))
+                    .append(" events=").append(events.get(b))
+                    .append(" waste=").append(String.format("%.3f", getWasteRatio(b)))
+                    .append(']');
+        }
+        return sb.append('}').toString();
+    }
+}
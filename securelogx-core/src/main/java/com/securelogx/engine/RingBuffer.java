@@ -0,0 +1,288 @@
+package com.securelogx.engine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Preallocated, lock-free multi-producer / single-consumer ring buffer, after the LMAX Disruptor
+ * multi-producer sequencer. Replaces {@code ArrayBlockingQueue} for the hand-offs from
+ * application threads to the batcher and from the engine to each writer thread.
+ * <p>
+ * Producers claim a sequence with one CAS on the {@code cursor}, store the element in its slot,
+ * then publish the slot by writing the sequence's lap number into {@code published}. The consumer
+ * reads slots in sequence order while their lap matches (its barrier) and releases them by
+ * advancing {@code consumed}, which producers check before claiming a slot one lap ahead (their
+ * barrier). Producers cache the last {@code consumed} they saw, so a non-full buffer costs them no
+ * read of the consumer's cache line. The three sequences are padded onto their own cache lines.
+ * <p>
+ * {@link #offer} never blocks: it returns {@code false} when the buffer is full. Only one thread
+ * may consume ({@link #poll()}, {@link #poll(long, TimeUnit)}, {@link #drainTo}); how it waits
+ * when empty is the {@link WaitStrategy}. {@link #size()} and {@link #isEmpty()} may be called
+ * from any thread and are exact only when producers are quiet.
+ * <p>
+ * An {@code evictable} buffer also lets producers discard the oldest element with
+ * {@link #evictOldest()}. The consumer then releases each slot with a CAS instead of a plain
+ * write, so whichever side advances {@code consumed} first owns the element. The owner then clears
+ * the slot with a CAS from its element to {@code null}, which fails harmlessly if a producer has
+ * already reused the slot, so taken elements do not stay reachable from the buffer. The same
+ * instance must therefore not be in an evictable buffer twice at once.
+ */
+public final class RingBuffer<E> {
+
+    private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle ENTRIES = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private final Object[] entries;
+    private final int[] published; // lap number of the sequence last published into each slot
+    private final int mask;
+    private final int shift;
+    private final int capacity;
+    private final WaitStrategy waitStrategy;
+    private final boolean evictable;
+
+    private final Sequence cursor = new Sequence(-1);       // last sequence claimed by a producer
+    private final Sequence consumed = new Sequence(-1);     // last sequence released by the consumer
+    private final Sequence consumedCache = new Sequence(-1); // producers' last read of consumed
+    private volatile Thread waiter;                        // parked consumer, PARK only
+
+    public RingBuffer(int capacity, WaitStrategy waitStrategy) {
+        this(capacity, waitStrategy, false);
+    }
+
+    /**
+     * @param capacity  rounded up to a power of two
+     * @param evictable whether producers may call {@link #evictOldest()}
+     */
+    public RingBuffer(int capacity, WaitStrategy waitStrategy, boolean evictable) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.shift = Integer.numberOfTrailingZeros(size);
+        this.entries = new Object[size];
+        this.published = new int[size];
+        java.util.Arrays.fill(published, -1);
+        this.waitStrategy = waitStrategy;
+        this.evictable = evictable;
+    }
+
+    /** Publishes {@code element}; {@code false} if the buffer is full. Safe from any thread. */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long next;
+        while (true) {
+            long current = cursor.get();
+            next = current + 1;
+            long wrapPoint = next - capacity;
+            if (wrapPoint > consumedCache.get()) {
+                long seen = consumed.get();
+                consumedCache.set(seen);
+                if (wrapPoint > seen) {
+                    return false;
+                }
+            }
+            if (cursor.compareAndSet(current, next)) {
+                break;
+            }
+        }
+        int slot = (int) next & mask;
+        entries[slot] = element;
+        if (waitStrategy == WaitStrategy.PARK) {
+            // Full fence: orders the publish before the waiter read (the consumer does the reverse)
+            PUBLISHED.setVolatile(published, slot, (int) (next >>> shift));
+            Thread parked = waiter;
+            if (parked != null) {
+                LockSupport.unpark(parked);
+            }
+        } else {
+            PUBLISHED.setRelease(published, slot, (int) (next >>> shift));
+        }
+        return true;
+    }
+
+    /** Next element, or {@code null} if none is published yet. Consumer thread only. */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        if (evictable) {
+            return take();
+        }
+        long next = consumed.getPlain() + 1;
+        if (!isPublished(next)) {
+            return null;
+        }
+        int slot = (int) next & mask;
+        E element = (E) entries[slot];
+        entries[slot] = null;
+        consumed.setRelease(next);
+        return element;
+    }
+
+    /**
+     * Next element, waiting up to {@code timeout} as the {@link WaitStrategy} says; {@code null} on
+     * timeout. Consumer thread only.
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int attempt = 0; ; attempt++) {
+            E element = poll();
+            if (element != null) {
+                return element;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (waitStrategy == WaitStrategy.BUSY_SPIN || attempt < WaitStrategy.SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (waitStrategy == WaitStrategy.YIELD || attempt < WaitStrategy.YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                waiter = Thread.currentThread();
+                VarHandle.fullFence(); // orders the waiter write before the re-check (producers do the reverse)
+                if (!isPublished(consumed.get() + 1)) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+                waiter = null;
+            }
+        }
+    }
+
+    /**
+     * Moves up to {@code max} published elements into {@code sink}, releasing their slots with one
+     * sequence write; returns how many. Consumer thread only.
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super E> sink, int max) {
+        if (evictable) {
+            int n = 0;
+            E element;
+            while (n < max && (element = take()) != null) {
+                sink.add(element);
+                n++;
+            }
+            return n;
+        }
+        long first = consumed.getPlain() + 1;
+        long next = first;
+        while (next - first < max && isPublished(next)) {
+            int slot = (int) next & mask;
+            sink.add((E) entries[slot]);
+            entries[slot] = null;
+            next++;
+        }
+        if (next != first) {
+            consumed.setRelease(next - 1);
+        }
+        return (int) (next - first);
+    }
+
+    /**
+     * Removes the oldest published element so a producer can take its slot; {@code null} if the
+     * oldest is not published yet. Only for {@code evictable} buffers; safe from any thread.
+     */
+    public E evictOldest() {
+        if (!evictable) {
+            throw new IllegalStateException("RingBuffer is not evictable");
+        }
+        return take();
+    }
+
+    /** Claims the oldest published element by CAS on {@code consumed}; see the class comment. */
+    @SuppressWarnings("unchecked")
+    private E take() {
+        while (true) {
+            long current = consumed.get();
+            long next = current + 1;
+            if (!isPublished(next)) {
+                return null;
+            }
+            int slot = (int) next & mask;
+            E element = (E) entries[slot];
+            if (consumed.compareAndSet(current, next)) {
+                ENTRIES.compareAndSet(entries, slot, element, null); // a plain store could clear a reused slot
+                return element;
+            }
+        }
+    }
+
+    /** Claimed but not yet consumed elements, including ones still being published. */
+    public int size() {
+        long size = cursor.get() - consumed.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    private boolean isPublished(long sequence) {
+        return (int) PUBLISHED.getAcquire(published, (int) sequence & mask) == (int) (sequence >>> shift);
+    }
+
+    // Cache-line padding around each sequence, so producers and the consumer don't false-share
+
+    @SuppressWarnings("unused")
+    static class LhsPadding {
+        protected long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    static class Value extends LhsPadding {
+        protected volatile long value;
+    }
+
+    @SuppressWarnings("unused")
+    static class RhsPadding extends Value {
+        protected long p9, p10, p11, p12, p13, p14, p15;
+    }
+
+    static final class Sequence extends RhsPadding {
+        private static final VarHandle VALUE;
+
+        static {
+            try {
+                VALUE = MethodHandles.lookup().findVarHandle(Value.class, "value", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        Sequence(long initial) {
+            this.value = initial;
+        }
+
+        long get() {
+            return value;
+        }
+
+        long getPlain() {
+            return (long) VALUE.get(this);
+        }
+
+        void set(long v) {
+            value = v;
+        }
+
+        void setRelease(long v) {
+            VALUE.setRelease(this, v);
+        }
+
+        boolean compareAndSet(long expected, long v) {
+            return VALUE.compareAndSet(this, expected, v);
+        }
+    }
+}
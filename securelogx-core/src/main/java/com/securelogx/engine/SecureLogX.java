@@ -2,15 +2,20 @@ package com.securelogx.engine;
 
 import com.securelogx.config.SecureLogXConfig;
 import com.securelogx.consumer.MaskingConsumer;
-import com.securelogx.io.SecureFileAppender;
+import com.securelogx.io.LogAppender;
 import com.securelogx.kafka.SecureLogXKafkaProducer;
 import com.securelogx.model.LogEvent;
 import com.securelogx.model.LogLevel;
-import com.securelogx.ner.TokenizerEngine;
+import com.securelogx.ner.TokenizedInput;
+import com.securelogx.ner.impl.InferenceJob;
+import com.securelogx.ner.impl.LearnedPiiDictionary;
+import com.securelogx.ner.impl.MaskResultCache;
 import com.securelogx.ner.impl.ONNXDynamicInferenceEngine;
 import com.securelogx.ner.impl.ParallelTokenizer;
+import com.securelogx.ner.impl.PatternDetector;
+import com.securelogx.ner.impl.PiiPrefilter;
+import com.securelogx.util.LogLineEncoder;
 
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -28,22 +33,30 @@ public class SecureLogX {
 
     private final SecureLogXConfig config;
     private final Mode mode;
-    private final TokenizerEngine tokenizer;
+    private final ParallelTokenizer tokenizer;
     private final ONNXDynamicInferenceEngine inferenceEngine;
     private final SecureLogXKafkaProducer kafkaProducer;
-    private final ExecutorService executor;
-    private final BlockingQueue<LogEvent> inferenceQueue;
+    private final MaskingPipeline pipeline;
+    private final BackpressureQueue<LogEvent> inferenceQueue;
 
     private final int WRITER_THREAD_COUNT;
-    private final List<BlockingQueue<String>> writerBuffers = new ArrayList<>();
+    private final List<BackpressureQueue<TracedLine>> writerBuffers = new ArrayList<>();
     private final List<Thread> writerThreads = new ArrayList<>();
-    private final Map<String, SecureFileAppender> writerAppenders = new ConcurrentHashMap<>();
-    private final AtomicInteger writerIndex = new AtomicInteger(0);
+    private final List<TraceReorderBuffer> writerReorders = new ArrayList<>();
+    private final Map<String, LogAppender> writerAppenders = new ConcurrentHashMap<>();
     private volatile boolean running = true;
+    private volatile boolean writersRunning = true;
     private Thread batchThread;
-
-    private static final int BATCH_SIZE = 8;
-    private static final int INFERENCE_QUEUE_CAPACITY = 10_000;
+    private final Queue<TokenizedInput> freeBuffers = new ConcurrentLinkedQueue<>();
+    private final LengthBucketer bucketer;
+    private final AdaptiveBatcher batchPolicy;
+    private final PiiPrefilter prefilter;
+    private final MemoryAccountant memoryAccountant;
+    private final PatternDetector detector;
+    private final LearnedPiiDictionary dictionary;
+
+    // Ring slots per hand-off; the byte budget of the MemoryAccountant is what normally fills them
+    private static final int QUEUE_SLOTS = 1 << 16;
     private static final ThreadLocal<RequestContext> requestContext = ThreadLocal.withInitial(RequestContext::new);
 
     /**
@@ -59,9 +72,8 @@ public class SecureLogX {
      * @throws Exception on initialization failures
      */
     public SecureLogX() throws Exception {
-        // Load config and tokenizer
+        // Load config
         this.config = new SecureLogXConfig(System.getenv().getOrDefault("SECURELOGX_ENV", "dev"));
-        this.tokenizer = new ParallelTokenizer(config.getTokenizerPath());
 
         // Determine mode
         String m = config.getMode();
@@ -72,6 +84,12 @@ public class SecureLogX {
             tmp = Mode.CPU_SINGLE;
         }
         this.mode = tmp;
+        this.prefilter = new PiiPrefilter(config);
+        this.detector = config.isDetectorAllLevels() ? new PatternDetector(config) : null;
+
+        // Tokenizer: batches are encoded across maxCpuThreads workers in CPU_MULTI
+        int cpuThreads = Math.min(config.getMaxCpuThreads(), Runtime.getRuntime().availableProcessors());
+        this.tokenizer = new ParallelTokenizer(config.getTokenizerPath(), mode == Mode.CPU_MULTI ? cpuThreads : 1);
 
         switch (mode) {
             case KAFKA:
@@ -92,16 +110,19 @@ public class SecureLogX {
                 consumerThread.start();  */
                 // Producer only
                 this.inferenceEngine = null;
+                this.dictionary      = null;
                 this.kafkaProducer   = new SecureLogXKafkaProducer(this.config.getKafkaProperties());
-                this.executor        = null;
+                this.pipeline        = null;
                 this.inferenceQueue  = null;
+                this.memoryAccountant = null;
                 this.WRITER_THREAD_COUNT = 0;
+                this.bucketer = null;
+                this.batchPolicy = null;
                 break;
 
             default:
                 // Local masking
                 this.kafkaProducer = null;
-                this.inferenceEngine = new ONNXDynamicInferenceEngine(config.getModelPath(), config);
 
                 boolean multiCpu = (mode == Mode.CPU_MULTI);
                 boolean useGpu   = (mode == Mode.GPU);
@@ -109,17 +130,38 @@ public class SecureLogX {
                 int threads = useGpu ? 1 : (multiCpu ? Math.min(config.getMaxCpuThreads(), cores) : 1);
                 this.WRITER_THREAD_COUNT = threads;
 
-                this.executor = multiCpu ? Executors.newFixedThreadPool(threads) : null;
-                this.inferenceQueue = new ArrayBlockingQueue<>(INFERENCE_QUEUE_CAPACITY);
+                // Batches are inferred by a pool of workers, each with its own ONNX session
+                int workers = config.getInferenceWorkers() > 0 ? config.getInferenceWorkers() : Math.max(1, threads / 4);
+                int inferThreads = threads > 1 ? workers : 1;
+                this.inferenceEngine = new ONNXDynamicInferenceEngine(config.getModelPath(), config, inferThreads);
+                inferenceEngine.setTokenizer(tokenizer);
+                this.dictionary = config.isDictionaryEnabled() ? new LearnedPiiDictionary(config) : null;
+                if (dictionary != null) {
+                    inferenceEngine.setEntityListener(dictionary::learn);
+                }
+
+                WaitStrategy waitStrategy = WaitStrategy.parse(config.getRingBufferWaitStrategy());
+                this.memoryAccountant = new MemoryAccountant(config);
+                memoryAccountant.register();
+                System.out.println("[SecureLogX INIT] Queue Byte Budget: " + config.getQueueMaxBytes() / (1024 * 1024)
+                        + " MB (JMX " + MemoryAccountant.OBJECT_NAME + ")");
+                this.inferenceQueue = new BackpressureQueue<>("inference", QUEUE_SLOTS, waitStrategy,
+                        config, memoryAccountant, config.getQueueInferenceShare(), BackpressureQueue.EVENTS);
+                this.batchPolicy = new AdaptiveBatcher(config);
+                this.bucketer = new LengthBucketer(config.getBatchBuckets(), batchPolicy);
+                this.pipeline = threads > 1
+                        ? new MaskingPipeline(inferenceEngine, config, inferThreads, this::completeBatch)
+                        : null;
 
                 for (int i = 0; i < WRITER_THREAD_COUNT; i++) {
-                    writerBuffers.add(new ArrayBlockingQueue<>(INFERENCE_QUEUE_CAPACITY));
+                    writerBuffers.add(new BackpressureQueue<>("writer" + i, QUEUE_SLOTS, waitStrategy,
+                            config, memoryAccountant, 1.0, BackpressureQueue.LINES));
                 }
                 if (WRITER_THREAD_COUNT > 1) {
                     startBatchInferenceThread();
                     startWriterThreads();
                 } else {
-                    writerAppenders.put("writer0", new SecureFileAppender(config.getLogFilePath()));
+                    writerAppenders.put("writer0", LogAppender.open(config.getLogFilePath(), config));
                 }
                 break;
         }
@@ -142,119 +184,252 @@ public class SecureLogX {
 
     public void process(LogEvent log) {
         System.out.println("[DEBUG] Entering process(), mode=" + mode);
-        String ts = LocalDateTime.now().toString();
         if (mode == Mode.KAFKA) {
             System.out.println("[DEBUG] In KAFKA branch, about to sendRaw");
-            kafkaProducer.sendRaw(formatLog(log, ts, log.getMessage()));
+            kafkaProducer.sendRaw(LogLineEncoder.line(log, log.getMessage()));
             System.out.println("[DEBUG] After sendRaw, returning");
             return;
         }
 
-        boolean needMask = log.requiresNER()
-                && config.isMaskingEnabled()
-                && config.shouldMaskInCurrentEnv();
+        boolean maskingOn = config.isMaskingEnabled() && config.shouldMaskInCurrentEnv();
+        boolean needMask = log.requiresNER() && maskingOn;
 
-        // No masking → immediate write
-        if (!needMask) {
-            writeLine(formatLog(log, ts, log.getMessage()));
+        // No masking, or nothing the model could find → immediate write (deterministic formats masked on all levels if enabled)
+        if (!needMask || !prefilter.mayContainPii(log.getMessage())) {
+            String message = detector != null && maskingOn
+                    ? detector.mask(log.getMessage(), log.shouldShowLastFour())
+                    : log.getMessage();
+            writeLine(log, LogLineEncoder.line(log, message));
             return;
         }
 
+        // Values the model already found → mask them from the dictionary; infer the rest unless nothing is left
+        if (dictionary != null) {
+            LearnedPiiDictionary.Match known = dictionary.lookup(log.getMessage(), log.shouldShowLastFour(), prefilter);
+            if (known != null) {
+                if (known.isCovered()) {
+                    writeLine(log, LogLineEncoder.line(log, known.getMasked()));
+                    return;
+                }
+                log = log.withMessage(known.getMasked());
+            }
+        }
+
         // Single-threaded: do inference synchronously
         if (WRITER_THREAD_COUNT <= 1) {
             List<String> masked = inferenceEngine.runBatch(tokenizer, List.of(log));
-            writeLine(masked.get(0));
+            writeLine(log, masked.get(0));
         }
         // Multi-threaded: enqueue for the batcher
         else {
-            inferenceQueue.offer(log);
+            inferenceQueue.offer(log, log.getLevel());
         }
     }
 
 
+    /**
+     * Batcher loop, the tokenize stage of the {@link MaskingPipeline}. Queued events are tokenized
+     * on the tokenizer's pool, then grouped by token length in the {@link LengthBucketer}; each due
+     * bucket is submitted to the pipeline while the next drain is still being tokenized. Encode
+     * buffers are recycled once a batch is written. Batch size and linger come from the
+     * {@link AdaptiveBatcher}, to which every finished batch reports its latency.
+     * <p>
+     * On shutdown the loop drains the queue and the buckets, then the pipeline.
+     */
     private void startBatchInferenceThread() {
         batchThread = new Thread(() -> {
-            List<LogEvent> batch = new ArrayList<>(BATCH_SIZE);
-            long lastFlush = System.currentTimeMillis();
-            while (running || !inferenceQueue.isEmpty()) {
+            List<LogEvent> drained = new ArrayList<>();
+            List<TokenizedInput> drainedBuffers = new ArrayList<>();
+            CompletableFuture<Void> tokenizing = null;
+            while (running || !inferenceQueue.isEmpty() || bucketer.hasPending() || tokenizing != null) {
+                // 1) Start tokenizing newly queued events
                 try {
-                    LogEvent first = inferenceQueue.poll(200, TimeUnit.MILLISECONDS);
-                    if (first != null) {
-                        batch.clear(); batch.add(first);
-                        inferenceQueue.drainTo(batch, BATCH_SIZE - 1);
+                    if (tokenizing == null) {
+                        long wait = Math.min(200, bucketer.millisUntilDue(System.currentTimeMillis()));
+                        LogEvent first = inferenceQueue.poll(wait, TimeUnit.MILLISECONDS);
+                        if (first != null) {
+                            drained.add(first);
+                            inferenceQueue.drainTo(drained, batchPolicy.getBatchSize() - 1);
+                            for (int i = 0; i < drained.size(); i++) {
+                                TokenizedInput buf = freeBuffers.poll();
+                                drainedBuffers.add(buf != null ? buf : new TokenizedInput());
+                            }
+                            tokenizing = tokenizer.tokenizeAllAsync(ONNXDynamicInferenceEngine.messages(drained), drainedBuffers);
+                        }
                     }
-                    long now = System.currentTimeMillis();
-                    if (!batch.isEmpty() && (batch.size() >= BATCH_SIZE || now - lastFlush > 500)) {
-                        List<String> masked = inferenceEngine.runBatch(tokenizer, batch);
-                        masked.forEach(this::writeLine);
-                        batch.clear(); lastFlush = now;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+
+                // 2) Submit one due bucket to the pipeline while that drain tokenizes
+                try {
+                    batchPolicy.observeQueueDepth(inferenceQueue.size() + bucketer.pending());
+                    LengthBucketer.Batch ready = bucketer.pollReady(System.currentTimeMillis(), !running);
+                    if (ready != null) {
+                        pipeline.submit(new InferenceJob(ready.events, ready.encoded, ready.oldestArrival, ready.bucket));
                     }
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
+
+                // 3) Bucket the tokenized drain by length
+                if (tokenizing != null) {
+                    try {
+                        tokenizing.join();
+                        long now = System.currentTimeMillis();
+                        for (int i = 0; i < drained.size(); i++) {
+                            bucketer.add(drained.get(i), drainedBuffers.get(i), now);
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        freeBuffers.addAll(drainedBuffers);
+                    } finally {
+                        drained.clear();
+                        drainedBuffers.clear();
+                        tokenizing = null;
+                    }
+                }
+            }
+            try {
+                pipeline.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }, "SecureLogXBatcher");
         batchThread.start();
     }
 
+    /**
+     * Pipeline sink: writes a finished batch, reports its latency and padding, and recycles its
+     * encode buffers.
+     */
+    private void completeBatch(InferenceJob job) {
+        long now = System.currentTimeMillis();
+        batchPolicy.recordBatch(job.getDispatchedAt() - job.getQueuedSince(), now - job.getDispatchedAt());
+        if (job.getBucket() >= 0) {
+            bucketer.stats().recordTokens(job.getBucket(), job.getRealTokens(), job.getPaddedTokens());
+        }
+        List<LogEvent> events = job.getEvents();
+        List<String> lines = job.getLines();
+        for (int i = 0; i < lines.size(); i++) {
+            writeLine(events.get(i), lines.get(i));
+        }
+        freeBuffers.addAll(job.getEncoded());
+    }
+
     private void startWriterThreads() {
         for (int i = 0; i < WRITER_THREAD_COUNT; i++) {
             final int idx = i;
+            TraceReorderBuffer reorder = new TraceReorderBuffer(config.getWriterReorderWindowMs(), config.getWriterTraceIdleMs());
+            writerReorders.add(reorder);
             Thread writer = new Thread(() -> {
-                SecureFileAppender app = writerAppenders.computeIfAbsent(
+                LogAppender app = writerAppenders.computeIfAbsent(
                         "writer" + idx,
-                        k -> new SecureFileAppender(
-                                config.getLogFilePath().replace(".log", "") + "." + k + ".log"
+                        k -> LogAppender.open(
+                                config.getLogFilePath().replace(".log", "") + "." + k + ".log", config
                         )
                 );
-                BlockingQueue<String> buf = writerBuffers.get(idx);
-                while (running || !buf.isEmpty()) {
+                BackpressureQueue<TracedLine> buf = writerBuffers.get(idx);
+                while (writersRunning || !buf.isEmpty()) {
                     try {
-                        String line = buf.poll(200, TimeUnit.MILLISECONDS);
-                        if (line != null) app.write(line);
+                        long now = System.currentTimeMillis();
+                        TracedLine line = buf.poll(Math.min(200, reorder.millisUntilDue(now)), TimeUnit.MILLISECONDS);
+                        now = System.currentTimeMillis();
+                        if (line != null) reorder.add(line, now, app::write);
+                        reorder.release(now, app::write);
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
                 }
+                reorder.flush(app::write);
             }, "SecureLogXWriter-" + idx);
             writer.start(); writerThreads.add(writer);
         }
     }
 
-    private void writeLine(String line) {
+    /**
+     * Writes {@code line} for {@code log}. With several writers, each trace goes to one writer,
+     * picked by its traceId hash, which writes the trace's lines in seq order.
+     */
+    private void writeLine(LogEvent log, String line) {
         if (WRITER_THREAD_COUNT <= 1) {
             writerAppenders.get("writer0").write(line);
         } else {
-            int idx = writerIndex.getAndIncrement() % WRITER_THREAD_COUNT;
-            writerBuffers.get(idx).offer(line);
+            int idx = Math.floorMod(Objects.hashCode(log.getTraceId()), WRITER_THREAD_COUNT);
+            writerBuffers.get(idx).offer(new TracedLine(log.getTraceId(), log.getSequenceNumber(), line), log.getLevel());
         }
     }
 
-    private String formatLog(LogEvent log, String ts, String msg) {
-        return String.format(
-                "timestamp=%s level=%s traceId=%s seq=%d message=\"%s\"",
-                ts, log.getLevel(), log.getTraceId(), log.getSequenceNumber(), msg
-        );
-    }
-
     public void shutdown() throws Exception {
-        if (executor != null) {
-            executor.shutdown();
-            executor.awaitTermination(10, TimeUnit.SECONDS);
-        }
         running = false;
         if (batchThread != null) batchThread.join();
+        writersRunning = false;
         writerThreads.forEach(t -> {
             try { t.join(); } catch (InterruptedException ignored) {}
         });
-        writerAppenders.values().forEach(SecureFileAppender::close);
+        writerAppenders.values().forEach(LogAppender::close);
+        closeQueues();
         if (kafkaProducer != null) kafkaProducer.close();
         if (inferenceEngine != null) inferenceEngine.shutdown();
+        if (dictionary != null) dictionary.close();
+        tokenizer.shutdown();
     }
 
     public boolean isQueueEmpty() {
         if (mode == Mode.KAFKA) return true;
-        return inferenceQueue.isEmpty() && writerBuffers.stream().allMatch(Queue::isEmpty);
+        return inferenceQueue.isEmpty() && !bucketer.hasPending()
+                && (pipeline == null || pipeline.isIdle())
+                && writerBuffers.stream().allMatch(BackpressureQueue::isEmpty);
+    }
+
+    /** Global byte budget of the batcher and writer hand-offs, or {@code null} in KAFKA mode. */
+    public MemoryAccountant getMemoryAccountant() {
+        return memoryAccountant;
+    }
+
+    /** Hand-off to the batcher with its overflow counters, or {@code null} in KAFKA mode. */
+    public BackpressureQueue<LogEvent> getInferenceQueue() {
+        return inferenceQueue;
+    }
+
+    /** Hand-offs to the writer threads with their overflow counters (empty unless CPU_MULTI). */
+    public List<BackpressureQueue<TracedLine>> getWriterQueues() {
+        return Collections.unmodifiableList(writerBuffers);
+    }
+
+    /** Lines the writers held for an earlier line of their trace (0 unless CPU_MULTI). */
+    public long getWriterReordered() {
+        return writerReorders.stream().mapToLong(TraceReorderBuffer::getReordered).sum();
+    }
+
+    /** Lines the writers wrote after a later line of their trace (0 unless CPU_MULTI). */
+    public long getWriterLate() {
+        return writerReorders.stream().mapToLong(TraceReorderBuffer::getLate).sum();
+    }
+
+    /** Current adaptive batch size and linger of the batcher, or {@code null} in KAFKA mode. */
+    public AdaptiveBatcher getBatchPolicy() {
+        return batchPolicy;
+    }
+
+    /** Pre-filter gate in front of NER, with its bypass counters. */
+    public PiiPrefilter getPrefilter() {
+        return prefilter;
+    }
+
+    /** Learned PII dictionary with its hit-rate counters, or {@code null} unless enabled. */
+    public LearnedPiiDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /** Mask result cache for byte-identical messages, or {@code null} in KAFKA mode or if disabled. */
+    public MaskResultCache getResultCache() {
+        return inferenceEngine != null ? inferenceEngine.getResultCache() : null;
+    }
+
+    /** Padding-waste statistics of the length-bucketed batcher, or {@code null} in KAFKA mode. */
+    public PaddingStats getPaddingStats() {
+        return bucketer != null ? bucketer.stats() : null;
     }
 
     private static class RequestContext {
@@ -265,13 +440,12 @@ public class SecureLogX {
     }
 
     /**
-     * Stops any in-flight inference work and shuts down the thread pool (if CPU_MULTI).
+     * Finishes queued and in-flight inference work, then stops the batcher and its inference
+     * workers (if CPU_MULTI).
      */
     public void shutdownExecutor() throws InterruptedException {
-        if (executor != null) {
-            executor.shutdown();
-            executor.awaitTermination(10, TimeUnit.SECONDS);
-        }
+        running = false;
+        if (batchThread != null) batchThread.join();
     }
 
     /**
@@ -280,8 +454,15 @@ public class SecureLogX {
     public void shutdownAppender() throws InterruptedException {
         running = false;
         if (batchThread != null) batchThread.join();
+        writersRunning = false;
         for (Thread t : writerThreads) t.join();
-        writerAppenders.values().forEach(SecureFileAppender::close);
+        writerAppenders.values().forEach(LogAppender::close);
+        closeQueues();
+    }
+
+    private void closeQueues() {
+        if (inferenceQueue != null) inferenceQueue.close();
+        writerBuffers.forEach(BackpressureQueue::close);
     }
 
 }
@@ -0,0 +1,224 @@
+package com.securelogx.engine;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Append-only overflow file for a {@link BackpressureQueue} under the {@code SPILL} policy.
+ * Spilled SECURE events are still unmasked, so every record is encrypted with AES-GCM:
+ * {@code [int length][12-byte IV][ciphertext + tag]}. Records are read back in the order they
+ * were written, and a record only counts as read once it is removed after a peek, so one the
+ * queue has no room for stays at the head; once all are read the file is truncated.
+ * <p>
+ * While records keep arriving the file may never empty, so once at least {@link #COMPACT_BYTES}
+ * have been read and they make up at least half the file, the unread records are copied into a new
+ * file that replaces it. Each byte is copied at most about once that way. A record that would take
+ * the file past {@code securelogx.overflow.spillMaxBytes}, even after compacting, is refused.
+ * <p>
+ * The key comes from {@code securelogx.overflow.spillKey} (base64, 16/24/32 bytes). Without one a
+ * random key is generated per process, so records left over from a crash cannot be read and are
+ * discarded on the next start; with one they are recovered. A new file is created on first use.
+ */
+final class SpillFile implements Closeable {
+
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    static final long COMPACT_BYTES = 1 << 20;
+
+    private final Path path;
+    private final Path compactPath;
+    private final long maxBytes;
+    private final SecretKey key;
+    private final boolean persistentKey;
+    private final SecureRandom random = new SecureRandom();
+    private FileChannel channel;
+    private long readPos;
+    private long writePos;
+    private long headLength; // bytes of the record returned by peek(), 0 if none
+    private volatile long pending;
+
+    /**
+     * @param base64Key configured key, or null/empty for a per-process random key
+     * @param maxBytes  largest the file may grow
+     */
+    SpillFile(Path path, String base64Key, long maxBytes) throws IOException, GeneralSecurityException {
+        this.path = path;
+        this.compactPath = path.resolveSibling(path.getFileName() + ".compact");
+        this.maxBytes = maxBytes;
+        this.persistentKey = base64Key != null && !base64Key.isBlank();
+        if (persistentKey) {
+            this.key = new SecretKeySpec(Base64.getDecoder().decode(base64Key.trim()), "AES");
+        } else {
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(256);
+            this.key = generator.generateKey();
+        }
+        if (Files.exists(path)) {
+            open();
+        }
+    }
+
+    /** Records written and not yet read back. */
+    long pending() {
+        return pending;
+    }
+
+    /** Encrypts and appends {@code record}; {@code false} if the file has no room for it. */
+    synchronized boolean append(byte[] record) throws IOException, GeneralSecurityException {
+        open();
+        byte[] iv = new byte[IV_BYTES];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+        byte[] sealed = cipher.doFinal(record);
+
+        long size = 4 + IV_BYTES + sealed.length;
+        if (writePos + size > maxBytes && readPos > 0) {
+            compact();
+        }
+        if (writePos + size > maxBytes) {
+            return false;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(4 + IV_BYTES + sealed.length);
+        buf.putInt(IV_BYTES + sealed.length).put(iv).put(sealed).flip();
+        while (buf.hasRemaining()) {
+            writePos += channel.write(buf, writePos);
+        }
+        pending++;
+        return true;
+    }
+
+    /** Oldest unread record, or {@code null} if there is none. It stays unread until {@link #remove}. */
+    synchronized byte[] peek() throws IOException, GeneralSecurityException {
+        if (pending == 0) {
+            return null;
+        }
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(length, readPos);
+        ByteBuffer body = ByteBuffer.allocate(length.flip().getInt());
+        readFully(body, readPos + 4);
+        headLength = 4 + body.capacity();
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, body.array(), 0, IV_BYTES));
+        return cipher.doFinal(body.array(), IV_BYTES, body.capacity() - IV_BYTES);
+    }
+
+    /** Marks the record returned by the last {@link #peek} as read; false if there is none. */
+    synchronized boolean remove() throws IOException {
+        if (pending == 0 || headLength == 0) {
+            return false;
+        }
+        readPos += headLength;
+        headLength = 0;
+        if (--pending == 0) {
+            channel.truncate(0);
+            readPos = 0;
+            writePos = 0;
+        } else if (readPos >= COMPACT_BYTES && readPos >= writePos - readPos) {
+            compact();
+        }
+        return true;
+    }
+
+    /** Copies the unread records into a new file and moves it over this one. */
+    private void compact() throws IOException {
+        try (FileChannel out = FileChannel.open(compactPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            restrict(compactPath);
+            for (long pos = readPos; pos < writePos; ) {
+                pos += channel.transferTo(pos, writePos - pos, out);
+            }
+        }
+        channel.close();
+        Files.move(compactPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writePos -= readPos;
+        readPos = 0;
+    }
+
+    private void readFully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position + buf.position());
+            if (n < 0) {
+                throw new IOException("Truncated spill record in " + path);
+            }
+        }
+    }
+
+    /** Opens the file; recovers leftover records if the key is persistent, else discards them. */
+    private void open() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.deleteIfExists(compactPath); // left by a crash while compacting; the file itself is intact
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        restrict(path);
+        long size = channel.size();
+        if (size == 0) {
+            return;
+        }
+        if (!persistentKey) {
+            System.out.println("[SecureLogX INIT] Discarding unreadable spilled events from a previous run: " + path);
+            channel.truncate(0);
+            return;
+        }
+        ByteBuffer length = ByteBuffer.allocate(4);
+        long pos = 0;
+        long records = 0;
+        while (pos + 4 <= size) {
+            length.clear();
+            readFully(length, pos);
+            long end = pos + 4 + length.flip().getInt();
+            if (end > size) {
+                break; // torn last record
+            }
+            pos = end;
+            records++;
+        }
+        channel.truncate(pos);
+        writePos = pos;
+        pending = records;
+        System.out.println("[SecureLogX INIT] Recovering " + records + " spilled events from " + path);
+    }
+
+    private static void restrict(Path file) throws IOException {
+        try {
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException ignored) {
+            // Not a POSIX file system
+        }
+    }
+
+    /** Closes the file, deleting it if nothing is left to read. */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        channel.close();
+        channel = null;
+        if (pending == 0) {
+            Files.deleteIfExists(path);
+        }
+    }
+}
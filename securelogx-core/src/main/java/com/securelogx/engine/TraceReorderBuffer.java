@@ -0,0 +1,157 @@
+package com.securelogx.engine;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Puts the lines of each trace back into {@code seq} order before a writer thread writes them.
+ * <p>
+ * Lines of one trace reach their writer out of order: plain lines are written as soon as they are
+ * logged, SECURE lines only after batching and inference. A line is written when it is the next
+ * {@code seq} its trace expects (1 for a new trace); a line that skips ahead is held until the gap
+ * fills or it has waited {@code securelogx.writer.reorderWindowMs}, after which the gap is given up
+ * (its line was dropped, or the trace did not start at 1). A line arriving after its successors
+ * were written is written at once and counted as late.
+ * <p>
+ * Traces idle for {@code securelogx.writer.traceIdleMs} are forgotten. One instance per writer
+ * thread; not thread-safe, except that the counters may be read from any thread.
+ */
+final class TraceReorderBuffer {
+
+    private static final class Trace {
+        int next = 1;
+        long lastActive;
+        // key: seq in the high half, arrival counter in the low half, so equal seqs keep arrival order
+        final TreeMap<Long, Held> held = new TreeMap<>();
+    }
+
+    private static final class Held {
+        final Trace trace;
+        final int seq;
+        final String line;
+        final long arrived;
+        boolean written;
+
+        Held(Trace trace, int seq, String line, long arrived) {
+            this.trace = trace;
+            this.seq = seq;
+            this.line = line;
+            this.arrived = arrived;
+        }
+    }
+
+    private final long windowMs;
+    private final long idleMs;
+    private final Map<String, Trace> traces = new HashMap<>();
+    private final ArrayDeque<Held> arrivals = new ArrayDeque<>(); // held lines, oldest first
+    private int counter;
+    private long lastSweep;
+    // Written by the owning writer thread only, read by monitoring
+    private volatile long late;
+    private volatile long reordered;
+
+    TraceReorderBuffer(long windowMs, long idleMs) {
+        this.windowMs = windowMs;
+        this.idleMs = idleMs;
+    }
+
+    /** Writes {@code line} to {@code out} if it is next for its trace, else holds it. */
+    void add(TracedLine line, long now, Consumer<String> out) {
+        Trace trace = traces.computeIfAbsent(line.traceId != null ? line.traceId : "", k -> new Trace());
+        trace.lastActive = now;
+        if (line.seq < trace.next) {
+            if (line.seq > 0 || trace.next > 1) {
+                late++;
+            }
+            out.accept(line.line);
+            return;
+        }
+        if (line.seq == trace.next && trace.held.isEmpty()) {
+            out.accept(line.line);
+            trace.next++;
+            return;
+        }
+        Held held = new Held(trace, line.seq, line.line, now);
+        trace.held.put(((long) line.seq << 32) | (counter++ & 0xffffffffL), held);
+        arrivals.add(held);
+        drain(trace, out);
+    }
+
+    /** Writes held lines whose gap has been given up, and forgets idle traces. */
+    void release(long now, Consumer<String> out) {
+        while (!arrivals.isEmpty()) {
+            Held oldest = arrivals.peek();
+            if (oldest.written) {
+                arrivals.poll();
+                continue;
+            }
+            if (now - oldest.arrived < windowMs) {
+                break;
+            }
+            arrivals.poll();
+            Trace trace = oldest.trace;
+            while (!trace.held.isEmpty() && trace.held.firstEntry().getValue().seq <= oldest.seq) {
+                write(trace.held.pollFirstEntry().getValue(), out);
+            }
+            trace.next = Math.max(trace.next, oldest.seq + 1);
+            drain(trace, out);
+        }
+        if (now - lastSweep >= idleMs) {
+            lastSweep = now;
+            for (Iterator<Trace> it = traces.values().iterator(); it.hasNext(); ) {
+                Trace trace = it.next();
+                if (trace.held.isEmpty() && now - trace.lastActive >= idleMs) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /** Milliseconds until the oldest held line is due, {@code Long.MAX_VALUE} if none is held. */
+    long millisUntilDue(long now) {
+        while (!arrivals.isEmpty() && arrivals.peek().written) {
+            arrivals.poll();
+        }
+        return arrivals.isEmpty() ? Long.MAX_VALUE : Math.max(0, arrivals.peek().arrived + windowMs - now);
+    }
+
+    /** Writes every held line, each trace in seq order. */
+    void flush(Consumer<String> out) {
+        for (Trace trace : traces.values()) {
+            while (!trace.held.isEmpty()) {
+                write(trace.held.pollFirstEntry().getValue(), out);
+            }
+        }
+        arrivals.clear();
+        traces.clear();
+    }
+
+    /** Lines written after a later line of their trace. */
+    long getLate() {
+        return late;
+    }
+
+    /** Lines that were held for an earlier line of their trace before being written. */
+    long getReordered() {
+        return reordered;
+    }
+
+    /** Writes the held lines that continue the trace's sequence. */
+    private void drain(Trace trace, Consumer<String> out) {
+        while (!trace.held.isEmpty() && trace.held.firstEntry().getValue().seq <= trace.next) {
+            Held held = trace.held.pollFirstEntry().getValue();
+            write(held, out);
+            trace.next = Math.max(trace.next, held.seq + 1);
+        }
+    }
+
+    private void write(Held held, Consumer<String> out) {
+        held.written = true;
+        reordered++;
+        out.accept(held.line);
+    }
+}
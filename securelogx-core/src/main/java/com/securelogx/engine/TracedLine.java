@@ -0,0 +1,26 @@
+package com.securelogx.engine;
+
+/** A formatted output line with the trace and sequence number of its event, on its way to a writer. */
+public final class TracedLine {
+    final String traceId;
+    final int seq;
+    final String line;
+
+    public TracedLine(String traceId, int seq, String line) {
+        this.traceId = traceId;
+        this.seq = seq;
+        this.line = line;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public int getSequenceNumber() {
+        return seq;
+    }
+
+    public String getLine() {
+        return line;
+    }
+}
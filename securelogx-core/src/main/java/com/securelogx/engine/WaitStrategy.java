@@ -0,0 +1,33 @@
+package com.securelogx.engine;
+
+import java.util.Locale;
+
+/**
+ * How a {@link RingBuffer} consumer waits for producers once the buffer is empty.
+ * <ul>
+ *   <li>{@code BUSY_SPIN}: spins on the sequence; lowest latency, keeps one core busy per consumer</li>
+ *   <li>{@code YIELD}: spins briefly, then yields the core between checks</li>
+ *   <li>{@code PARK}: spins and yields briefly, then parks until a producer publishes or the
+ *       timeout ends; idle consumers cost nothing</li>
+ * </ul>
+ */
+public enum WaitStrategy {
+    BUSY_SPIN,
+    YIELD,
+    PARK;
+
+    /** Checks spent spinning before YIELD and PARK back off further. */
+    static final int SPIN_TRIES = 100;
+    /** Checks spent yielding before PARK parks. */
+    static final int YIELD_TRIES = 200;
+
+    /** Parses a config value, falling back to {@code PARK} for unknown names. */
+    public static WaitStrategy parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (Exception e) {
+            System.err.println("[ERROR] Unknown wait strategy '" + name + "', using PARK");
+            return PARK;
+        }
+    }
+}
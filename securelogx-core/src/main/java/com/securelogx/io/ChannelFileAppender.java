@@ -0,0 +1,330 @@
+package com.securelogx.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * NIO log file appender with group commit.
+ * <p>
+ * {@link #write} only copies the line's UTF-8 bytes into the current direct {@link ByteBuffer}; a
+ * line that does not fit continues in the next buffer. A flusher thread writes all filled buffers with
+ * one gathering {@link FileChannel#write(ByteBuffer[])}, and also a partly filled buffer once its
+ * first line is {@code commitIntervalMs} old (or on {@link #flush}). Written buffers are reused;
+ * when all {@code buffers} are waiting to be written, {@link #write} waits for one.
+ * <p>
+ * Written lines are forced to disk per {@link FsyncPolicy}: never, at most every
+ * {@code fsyncIntervalMs}, or after every group commit.
+ */
+public class ChannelFileAppender implements LogAppender {
+
+    private final String filePath;
+    private final FileChannel channel;
+    private final int bufferBytes;
+    private final int maxBuffers;
+    private final long commitIntervalMs;
+    private final FsyncPolicy fsync;
+    private final long fsyncIntervalMs;
+    private final Thread flusher;
+
+    // Guarded by this
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+    private final List<ByteBuffer> sealed = new ArrayList<>();
+    private ByteBuffer active;
+    private long activeSince;
+    private int allocated;
+    private long appended;     // lines accepted
+    private long sealedUpTo;   // lines entirely in sealed buffers
+    private long committed;    // lines written to the channel
+    private long synced;       // lines forced to disk
+    private long lastSync = System.currentTimeMillis();
+    private boolean appending;   // a line is being copied (the writer may be waiting for a buffer)
+    private int waitingWriters;
+    private boolean flushRequested;
+    private boolean closed;
+
+    // Written by the flusher only
+    private volatile long bytesWritten;
+    private volatile long commits;
+    private volatile long syncs;
+
+    public ChannelFileAppender(String filePath, int bufferBytes, int buffers, long commitIntervalMs,
+                               FsyncPolicy fsync, long fsyncIntervalMs) {
+        this.filePath = filePath;
+        this.bufferBytes = Math.max(bufferBytes, 64);
+        this.maxBuffers = Math.max(buffers, 2);
+        this.commitIntervalMs = Math.max(commitIntervalMs, 0);
+        this.fsync = fsync;
+        this.fsyncIntervalMs = Math.max(fsyncIntervalMs, 0);
+        try {
+            File logFile = new File(filePath);
+            File parent = logFile.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            this.channel = FileChannel.open(logFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open log file: " + filePath, e);
+        }
+        this.flusher = new Thread(this::runFlusher, "SecureLogXAppender-" + new File(filePath).getName());
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @Override
+    public void write(String line) {
+        append(line.getBytes(StandardCharsets.UTF_8)); // encoded outside the lock
+    }
+
+    private synchronized void append(byte[] bytes) {
+        boolean interrupted = false;
+        while (appending) {
+            // Another line is half copied, waiting for a buffer
+            waitingWriters++;
+            interrupted |= await();
+            waitingWriters--;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (closed) {
+            return;
+        }
+        appending = true;
+        int off = 0;
+        ByteBuffer buf = room();
+        while (bytes.length - off > buf.remaining()) {
+            int n = buf.remaining();
+            buf.put(bytes, off, n);
+            off += n;
+            buf = next();
+        }
+        buf.put(bytes, off, bytes.length - off);
+        if (!buf.hasRemaining()) {
+            buf = next();
+        }
+        buf.put((byte) '\n');
+        appended++;
+        appending = false;
+        if (waitingWriters > 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns once every line written before the call has been written to the file, and under
+     * {@link FsyncPolicy#BATCH} also forced to disk.
+     */
+    @Override
+    public synchronized void flush() {
+        long target = appended;
+        flushRequested = true;
+        notifyAll();
+        boolean interrupted = false;
+        while ((fsync == FsyncPolicy.BATCH ? synced : committed) < target && flusher.isAlive()) {
+            try {
+                wait(100);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Writes the remaining lines, forces them to disk unless the policy is {@code NONE}, and closes the file. */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("[ERROR] Failed to close log file: " + filePath);
+            e.printStackTrace();
+        }
+    }
+
+    /** The current buffer if it has room, else the next one. */
+    private ByteBuffer room() {
+        return active != null && active.hasRemaining() ? active : next();
+    }
+
+    /** Seals the current buffer and makes a free one current, waiting for the flusher if there is none. */
+    private ByteBuffer next() {
+        if (active != null) {
+            seal();
+            notifyAll();
+        }
+        if (free.isEmpty() && allocated < maxBuffers) {
+            free.add(ByteBuffer.allocateDirect(bufferBytes));
+            allocated++;
+        }
+        boolean interrupted = false;
+        while (free.isEmpty()) {
+            interrupted |= await(); // the line is half copied: finish it
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        active = free.poll();
+        activeSince = System.currentTimeMillis();
+        notifyAll(); // starts the flusher's commit interval
+        return active;
+    }
+
+    /** {@code wait()}, returning whether it was interrupted instead of throwing. */
+    private boolean await() {
+        try {
+            wait();
+            return false;
+        } catch (InterruptedException e) {
+            return true;
+        }
+    }
+
+    /** Moves the current buffer to the ones to be written (back to the free ones if empty). */
+    private void seal() {
+        if (active == null) {
+            return;
+        }
+        if (active.position() == 0) {
+            free.add(active);
+        } else {
+            sealed.add(active.flip());
+        }
+        active = null;
+        sealedUpTo = appended;
+    }
+
+    private void runFlusher() {
+        List<ByteBuffer> group = new ArrayList<>();
+        while (true) {
+            long upTo;
+            boolean syncNow;
+            boolean exit;
+            synchronized (this) {
+                while (true) {
+                    long now = System.currentTimeMillis();
+                    boolean hasActive = active != null && active.position() > 0;
+                    if (hasActive && (flushRequested || closed || now - activeSince >= commitIntervalMs)) {
+                        seal();
+                    }
+                    flushRequested = false;
+                    boolean unsynced = synced < committed || !sealed.isEmpty();
+                    syncNow = fsync == FsyncPolicy.BATCH
+                            || (fsync == FsyncPolicy.INTERVAL && unsynced && now - lastSync >= fsyncIntervalMs);
+                    exit = closed && !appending && sealed.isEmpty() && (active == null || active.position() == 0);
+                    if (!sealed.isEmpty() || exit || (syncNow && synced < committed)) {
+                        break;
+                    }
+                    long timeout = Long.MAX_VALUE;
+                    if (hasActive) {
+                        timeout = activeSince + commitIntervalMs - now;
+                    }
+                    if (fsync == FsyncPolicy.INTERVAL && synced < committed) {
+                        timeout = Math.min(timeout, lastSync + fsyncIntervalMs - now);
+                    }
+                    try {
+                        wait(timeout == Long.MAX_VALUE ? 0 : Math.max(timeout, 1));
+                    } catch (InterruptedException ignored) {
+                        // Only close() stops the flusher
+                    }
+                }
+                group.addAll(sealed);
+                sealed.clear();
+                upTo = sealedUpTo;
+            }
+
+            if (!group.isEmpty()) {
+                commit(group);
+            }
+            if (exit && fsync != FsyncPolicy.NONE) {
+                syncNow = true;
+            }
+            boolean forced = syncNow && sync();
+
+            synchronized (this) {
+                for (ByteBuffer buf : group) {
+                    free.add(buf.clear());
+                }
+                committed = Math.max(committed, upTo);
+                if (forced) {
+                    synced = committed;
+                    lastSync = System.currentTimeMillis();
+                }
+                notifyAll();
+            }
+            group.clear();
+            if (exit) {
+                return;
+            }
+        }
+    }
+
+    /** One gathering write of {@code group}. On failure its lines are dropped. */
+    private void commit(List<ByteBuffer> group) {
+        ByteBuffer[] srcs = group.toArray(new ByteBuffer[0]);
+        ByteBuffer last = srcs[srcs.length - 1];
+        try {
+            while (last.hasRemaining()) {
+                bytesWritten += channel.write(srcs);
+            }
+            commits++;
+        } catch (IOException e) {
+            System.err.println("[ERROR] Failed to write log file: " + filePath);
+            e.printStackTrace();
+        }
+    }
+
+    private boolean sync() {
+        try {
+            channel.force(false);
+            syncs++;
+            return true;
+        } catch (IOException e) {
+            System.err.println("[ERROR] Failed to fsync log file: " + filePath);
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /** Bytes written to the file so far. */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /** Gathering writes so far; lines per commit is the group-commit factor. */
+    public long getCommits() {
+        return commits;
+    }
+
+    /** fsync calls so far. */
+    public long getSyncs() {
+        return syncs;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Appender " + filePath + ": " + appended + " lines, " + bytesWritten + " bytes in "
+                + commits + " group commits, " + syncs + " fsyncs (" + fsync + ")";
+    }
+}
@@ -0,0 +1,28 @@
+package com.securelogx.io;
+
+import java.util.Locale;
+
+/**
+ * When a {@link ChannelFileAppender} forces written lines to disk.
+ * <ul>
+ *   <li>{@code NONE}: never; the OS writes the page cache back on its own schedule</li>
+ *   <li>{@code INTERVAL}: at most once per {@code securelogx.appender.fsyncIntervalMs}, so a crash
+ *       loses at most that much</li>
+ *   <li>{@code BATCH}: after every group commit; a line is durable once {@code flush()} returns</li>
+ * </ul>
+ */
+public enum FsyncPolicy {
+    NONE,
+    INTERVAL,
+    BATCH;
+
+    /** Parses a config value, falling back to {@code INTERVAL} for unknown names. */
+    public static FsyncPolicy parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (Exception e) {
+            System.err.println("[ERROR] Unknown fsync policy '" + name + "', using INTERVAL");
+            return INTERVAL;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.securelogx.io;
+
+import com.securelogx.config.SecureLogXConfig;
+
+import java.util.Locale;
+
+/**
+ * Destination of finished log lines. {@link #write} may be called from several threads; lines
+ * from one thread keep their order.
+ */
+public interface LogAppender {
+
+    /** Appends {@code line} and a line terminator. */
+    void write(String line);
+
+    /** Returns once every line written before the call is in the file (and synced, if the appender syncs every batch). */
+    void flush();
+
+    /** Flushes and closes the file. */
+    void close();
+
+    /** Opens the appender selected by {@code securelogx.appender.type} on {@code filePath}. */
+    static LogAppender open(String filePath, SecureLogXConfig config) {
+        String type = config.getAppenderType().trim().toUpperCase(Locale.ROOT);
+        if (type.equals("STREAM")) {
+            return new SecureFileAppender(filePath);
+        }
+        if (!type.equals("CHANNEL")) {
+            System.err.println("[ERROR] Unknown appender type '" + type + "', using CHANNEL");
+        }
+        return new ChannelFileAppender(filePath, config.getAppenderBufferBytes(), config.getAppenderBuffers(),
+                config.getAppenderCommitIntervalMs(), FsyncPolicy.parse(config.getAppenderFsync()),
+                config.getAppenderFsyncIntervalMs());
+    }
+}
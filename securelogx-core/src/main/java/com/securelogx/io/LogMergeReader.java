@@ -0,0 +1,215 @@
+package com.securelogx.io;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Streaming k-way merge of SecureLogX writer shard files ({@code securelogx.writer0..N.log}) into
+ * one time-ordered sequence of records.
+ * <p>
+ * Shard files are only roughly sorted by their {@code timestamp=} field: a line is stamped when
+ * the event is created but written after batching, inference and the writer's seq reordering, so
+ * a SECURE line can follow plain lines stamped after it. Each shard is therefore read through a
+ * reorder window: records are held in a small per-shard heap until the shard has been read
+ * {@code windowMs} past them, and only then compete in the heap across shards. Output is globally
+ * ordered as long as no line is written more than {@code windowMs} after lines stamped later;
+ * records that arrive later than that are emitted at once and counted by {@link #getLate}.
+ * Memory is bounded by the records in one window per shard, not by file size.
+ * <p>
+ * Equal timestamps keep file order within a shard (so a trace stays in {@code seq} order) and go
+ * to the lower shard index across shards. A line without a leading {@code timestamp=} (a message
+ * that contained a newline) is part of the record before it. A record whose timestamp cannot be
+ * parsed sorts with the record before it in its shard.
+ */
+public class LogMergeReader implements Iterator<String>, Closeable {
+
+    /** Default reorder window: well above the batcher linger plus inference and writer reordering. */
+    public static final long DEFAULT_WINDOW_MS = 5_000;
+
+    private static final String TIMESTAMP = "timestamp=";
+
+    private static final class Record {
+        final String text;
+        final long time;
+        final long order; // file order within the shard
+
+        Record(String text, long time, long order) {
+            this.text = text;
+            this.time = time;
+            this.order = order;
+        }
+    }
+
+    private static final class Shard {
+        final int index;
+        final BufferedReader reader;
+        final PriorityQueue<Record> window = new PriorityQueue<>((a, b) -> {
+            int c = Long.compare(a.time, b.time);
+            return c != 0 ? c : Long.compare(a.order, b.order);
+        });
+        String lookahead; // first line of the next record, or null at end of file
+        boolean eof;
+        long time = Long.MIN_VALUE; // last parsed timestamp
+        long maxTime = Long.MIN_VALUE;
+        long read;
+
+        Shard(int index, BufferedReader reader) {
+            this.index = index;
+            this.reader = reader;
+        }
+
+        /**
+         * Reads until the earliest held record is {@code windowNanos} behind the latest timestamp
+         * read, or to the end of the file; false if nothing is held.
+         */
+        boolean fill(long windowNanos) throws IOException {
+            // Without any timestamp yet there is nothing to order by: keep file order
+            while (!eof && (window.isEmpty()
+                    || (maxTime != Long.MIN_VALUE && window.peek().time > maxTime - windowNanos))) {
+                readRecord();
+            }
+            return !window.isEmpty();
+        }
+
+        /** Reads the next record (a line plus its continuation lines) into the window. */
+        private void readRecord() throws IOException {
+            String first = lookahead != null ? lookahead : reader.readLine();
+            if (first == null) {
+                eof = true;
+                return;
+            }
+            StringBuilder sb = null;
+            String line;
+            while ((line = reader.readLine()) != null && !line.startsWith(TIMESTAMP)) {
+                if (sb == null) {
+                    sb = new StringBuilder(first);
+                }
+                sb.append('\n').append(line);
+            }
+            lookahead = line;
+            eof = line == null;
+            long parsed = timestampOf(first);
+            if (parsed != Long.MIN_VALUE) {
+                time = parsed;
+                maxTime = Math.max(maxTime, parsed);
+            }
+            window.add(new Record(sb != null ? sb.toString() : first, time, read++));
+        }
+    }
+
+    private final List<Shard> shards = new ArrayList<>();
+    private final PriorityQueue<Shard> heads = new PriorityQueue<>((a, b) -> {
+        int c = Long.compare(a.window.peek().time, b.window.peek().time);
+        return c != 0 ? c : Integer.compare(a.index, b.index);
+    });
+    private final long windowNanos;
+    private long lastTime = Long.MIN_VALUE;
+    private long late;
+
+    /** Merges {@code files} with the {@link #DEFAULT_WINDOW_MS} reorder window. */
+    public LogMergeReader(List<Path> files) throws IOException {
+        this(files, DEFAULT_WINDOW_MS);
+    }
+
+    /** @param windowMs how far out of timestamp order a shard file may be */
+    public LogMergeReader(List<Path> files, long windowMs) throws IOException {
+        this.windowNanos = Math.max(windowMs, 0) * 1_000_000L;
+        try {
+            for (Path file : files) {
+                Shard shard = new Shard(shards.size(), Files.newBufferedReader(file, StandardCharsets.UTF_8));
+                shards.add(shard);
+                if (shard.fill(windowNanos)) {
+                    heads.add(shard);
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    /** Next record in merged order; a record spans several lines if its message did. */
+    @Override
+    public String next() {
+        Shard shard = heads.poll();
+        if (shard == null) {
+            throw new NoSuchElementException();
+        }
+        Record record = shard.window.poll();
+        if (record.time < lastTime) {
+            late++;
+        } else {
+            lastTime = record.time;
+        }
+        try {
+            if (shard.fill(windowNanos)) {
+                heads.add(shard);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return record.text;
+    }
+
+    /** Records emitted after a record with a later timestamp (written more than the window late). */
+    public long getLate() {
+        return late;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Shard shard : shards) {
+            try {
+                shard.reader.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Epoch nanoseconds of a line's leading {@code timestamp=} (ISO local date-time as written by
+     * the engine, taken as UTC, or with an offset), or {@code Long.MIN_VALUE} if there is none.
+     */
+    public static long timestampOf(String line) {
+        if (!line.startsWith(TIMESTAMP)) {
+            return Long.MIN_VALUE;
+        }
+        int end = line.indexOf(' ', TIMESTAMP.length());
+        String value = line.substring(TIMESTAMP.length(), end < 0 ? line.length() : end);
+        try {
+            LocalDateTime t = LocalDateTime.parse(value);
+            return t.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + t.getNano();
+        } catch (DateTimeParseException e) {
+            try {
+                OffsetDateTime t = OffsetDateTime.parse(value);
+                return t.toEpochSecond() * 1_000_000_000L + t.getNano();
+            } catch (DateTimeParseException ignored) {
+                return Long.MIN_VALUE;
+            }
+        }
+    }
+}
@@ -12,7 +12,7 @@ import java.io.PrintWriter;
   * appender.write("[SECURE] " + maskedLog);
  */
 
-public class SecureFileAppender {
+public class SecureFileAppender implements LogAppender {
     private final PrintWriter writer;
     private int writeCount = 0;
     private static final int FLUSH_THRESHOLD = 1000;
@@ -35,6 +35,7 @@ public class SecureFileAppender {
     //The write(...) method is synchronized to ensure:
 //No two threads write at the same time
 //Log lines don't get jumbled
+    @Override
     public synchronized void write(String formattedLog) {
     //    writer.println(formattedLog);
    //     writer.flush(); //Each log line gets flushed immediately after writing to avoid losing logs during crashes:
@@ -43,14 +44,19 @@ public class SecureFileAppender {
         writeCount++;
 
         if (writeCount >= FLUSH_THRESHOLD) {
-            writer.println(formattedLog);
             writer.flush();
             writeCount = 0;
         }
     }
 
+    @Override
+    public synchronized void flush() {
+        writer.flush();
+        writeCount = 0;
+    }
+
     // Close writer cleanly
-    public void close() {
+    public synchronized void close() {
 
             if (writer != null) {
                 writer.flush();
@@ -1,13 +1,13 @@
 package com.securelogx.kafka;
 
 import com.securelogx.model.LogEvent;
+import com.securelogx.util.LogLineEncoder;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.serialization.StringSerializer;
 
-import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Future;
@@ -71,24 +71,16 @@ public class SecureLogXKafkaProducer {
     /**
      * Formats a {@link LogEvent} and sends it to Kafka asynchronously.
      * <p>
-     * The message is serialized in the standard SecureLogX format:
+     * The message is serialized in the standard SecureLogX format by {@link LogLineEncoder}:
      * <pre>
-     * timestamp=YYYY-MM-DDTHH:mm:ss level=LEVEL traceId=ID seq=N message="..."
+     * timestamp=YYYY-MM-DDTHH:mm:ss.SSS level=LEVEL traceId=ID seq=N message="..."
      * </pre>
      *
      * @param event the {@link LogEvent} to format and send
      * @return a {@link Future} containing {@link RecordMetadata} when the send completes
      */
     public Future<RecordMetadata> sendLogEvent(LogEvent event) {
-        String formatted = String.format(
-                "timestamp=%s level=%s traceId=%s seq=%d message=\"%s\"",
-                LocalDateTime.now(),
-                event.getLevel(),
-                event.getTraceId(),
-                event.getSequenceNumber(),
-                event.getMessage()
-        );
-        return sendRaw(formatted);
+        return sendRaw(LogLineEncoder.line(event, event.getMessage()));
     }
 
     /**
@@ -0,0 +1,136 @@
+package com.securelogx.main;
+
+import com.securelogx.io.ChannelFileAppender;
+import com.securelogx.io.FsyncPolicy;
+import com.securelogx.io.LogAppender;
+import com.securelogx.io.SecureFileAppender;
+import com.securelogx.model.LogLevel;
+import com.securelogx.util.LogLineEncoder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Log file appender benchmark: the {@code PrintWriter}-based {@link SecureFileAppender} against
+ * {@link ChannelFileAppender} under each {@link FsyncPolicy}.
+ * <ul>
+ *   <li>Throughput: {@code threads} writers append {@code lines} masked log lines in total; the
+ *       time ends after {@code flush()}, so every line is in the file</li>
+ *   <li>write latency: per-call time of {@code write()} across all writers</li>
+ *   <li>commit latency: one line written and {@code flush()}ed, repeated; under {@code BATCH} this
+ *       includes the fsync</li>
+ * </ul>
+ *
+ * Usage: AppenderBenchmark [lines=1000000] [threads=4] [dir=java.io.tmpdir] [commits=200]
+ */
+public class AppenderBenchmark {
+
+    private static final String MESSAGE = "Patient John Doe SSN ***-**-6789 email ****@example.com paid with card ************1111";
+
+    private interface Factory {
+        LogAppender open(String path);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        Path dir = Paths.get(args.length > 2 ? args[2] : System.getProperty("java.io.tmpdir"));
+        int commits = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+
+        String[] names = {"STREAM", "CHANNEL/NONE", "CHANNEL/INTERVAL", "CHANNEL/BATCH"};
+        Factory[] factories = {
+                SecureFileAppender::new,
+                path -> new ChannelFileAppender(path, 262_144, 4, 5, FsyncPolicy.NONE, 1000),
+                path -> new ChannelFileAppender(path, 262_144, 4, 5, FsyncPolicy.INTERVAL, 1000),
+                path -> new ChannelFileAppender(path, 262_144, 4, 5, FsyncPolicy.BATCH, 1000),
+        };
+
+        System.out.println("----- Appender (" + lines + " lines, " + threads + " writer threads, " + dir + ") -----");
+        System.out.println(String.format("%-18s%14s%12s%12s%12s%14s%14s",
+                "appender", "K lines/s", "MB/s", "write p50", "write p99", "commit p50", "commit p99"));
+        for (int a = 0; a < names.length; a++) {
+            run(factories[a], dir, threads, lines / 4, Math.min(commits, 20)); // warm-up
+            double[] r = run(factories[a], dir, threads, lines, commits);
+            System.out.println(String.format("%-18s%14.1f%12.1f%10.2fus%10.2fus%12.1fus%12.1fus",
+                    names[a], r[0] / 1e3, r[1] / (1024 * 1024), r[2] / 1e3, r[3] / 1e3, r[4] / 1e3, r[5] / 1e3));
+        }
+    }
+
+    /** Returns lines/s, bytes/s, write p50 and p99 (ns), commit p50 and p99 (ns). */
+    private static double[] run(Factory factory, Path dir, int threads, int lines, int commits) throws Exception {
+        Path file = Files.createTempFile(dir, "securelogx-appender", ".log");
+        try {
+            LogAppender appender = factory.open(file.toString());
+            int perThread = lines / threads;
+            long[][] latencies = new long[threads][perThread];
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int idx = t;
+                Thread writer = new Thread(() -> {
+                    LogLineEncoder encoder = LogLineEncoder.get();
+                    String traceId = "trace-" + idx;
+                    String[] sample = new String[64];
+                    for (int i = 0; i < sample.length; i++) {
+                        sample[i] = encoder.format(System.currentTimeMillis(), LogLevel.SECURE, traceId, i + 1, MESSAGE);
+                    }
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long[] own = latencies[idx];
+                    for (int i = 0; i < perThread; i++) {
+                        long began = System.nanoTime();
+                        appender.write(sample[i & 63]);
+                        own[i] = System.nanoTime() - began;
+                    }
+                }, "SecureLogXBenchWriter-" + t);
+                writer.start();
+                writers.add(writer);
+            }
+
+            long began = System.nanoTime();
+            start.countDown();
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            appender.flush();
+            long elapsed = System.nanoTime() - began;
+            long bytes = Files.size(file);
+
+            long[] commitLatency = new long[commits];
+            for (int i = 0; i < commits; i++) {
+                long t0 = System.nanoTime();
+                appender.write("commit probe " + i);
+                appender.flush();
+                commitLatency[i] = System.nanoTime() - t0;
+            }
+            appender.close();
+
+            long[] all = new long[perThread * threads];
+            for (int t = 0; t < threads; t++) {
+                System.arraycopy(latencies[t], 0, all, t * perThread, perThread);
+            }
+            Arrays.sort(all);
+            Arrays.sort(commitLatency);
+            return new double[]{
+                    all.length * 1e9 / elapsed,
+                    bytes * 1e9 / elapsed,
+                    percentile(all, 0.50), percentile(all, 0.99),
+                    percentile(commitLatency, 0.50), percentile(commitLatency, 0.99)
+            };
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+}
@@ -0,0 +1,107 @@
+package com.securelogx.main;
+
+import com.securelogx.config.SecureLogXConfig;
+import com.securelogx.model.LogEvent;
+import com.securelogx.model.LogLevel;
+import com.securelogx.ner.TokenizedInput;
+import com.securelogx.ner.impl.ONNXDynamicInferenceEngine;
+import com.securelogx.ner.impl.ParallelTokenizer;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Inference scaling benchmark: masks the same pre-tokenized SECURE batches with 1, 2, 4, ...
+ * inference workers (one ONNX session each) and prints throughput, speedup and per-worker
+ * efficiency. Tokenization is done once up front so only inference and masking are timed.
+ *
+ * Usage: InferenceScalingBenchmark [events=20000] [maxWorkers=cores]
+ * Threads per worker follow securelogx.cpu.multithreading.enabled (cores / workers, or 1).
+ */
+public class InferenceScalingBenchmark {
+
+    private static final int BATCH_SIZE = 8;
+
+    public static void main(String[] args) throws Exception {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int maxWorkers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        SecureLogXConfig config = new SecureLogXConfig(System.getenv().getOrDefault("SECURELOGX_ENV", "dev"));
+
+        // Pre-tokenize a fixed corpus of batches
+        List<List<LogEvent>> batches = new ArrayList<>();
+        List<List<TokenizedInput>> encoded = new ArrayList<>();
+        ParallelTokenizer tokenizer = new ParallelTokenizer(config.getTokenizerPath(), Runtime.getRuntime().availableProcessors());
+        for (int i = 0; i < events; i += BATCH_SIZE) {
+            List<LogEvent> batch = new ArrayList<>(BATCH_SIZE);
+            for (int j = i; j < Math.min(events, i + BATCH_SIZE); j++) {
+                batch.add(new LogEvent(message(j), LogLevel.SECURE, true, "BENCH-" + (j % 64), j));
+            }
+            List<TokenizedInput> buffers = new ArrayList<>(batch.size());
+            for (int j = 0; j < batch.size(); j++) {
+                buffers.add(new TokenizedInput());
+            }
+            tokenizer.tokenizeAll(ONNXDynamicInferenceEngine.messages(batch), buffers);
+            batches.add(batch);
+            encoded.add(buffers);
+        }
+        tokenizer.shutdown();
+
+        PrintStream out = System.out;
+        PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+        double baseline = 0;
+        out.println("----- Inference Scaling (" + events + " events, batch " + BATCH_SIZE + ") -----");
+        out.println("workers  events/s  speedup  efficiency");
+        for (int workers = 1; workers <= maxWorkers; workers <<= 1) {
+            ONNXDynamicInferenceEngine engine = new ONNXDynamicInferenceEngine(config.getModelPath(), config, workers);
+            System.setOut(quiet); // per-batch [DEBUG] output would serialize the workers
+            try {
+                run(engine, batches.subList(0, Math.min(batches.size(), workers * 4)), encoded, workers); // warm-up
+                long start = System.nanoTime();
+                run(engine, batches, encoded, workers);
+                double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+                double rate = events / seconds;
+                if (workers == 1) {
+                    baseline = rate;
+                }
+                double speedup = rate / baseline;
+                out.printf("%7d  %8.0f  %6.2fx  %9.0f%%%n", workers, rate, speedup, 100 * speedup / workers);
+            } finally {
+                System.setOut(out);
+                engine.shutdown();
+            }
+        }
+    }
+
+    /** Masks every batch once, with {@code workers} threads pulling the next batch index. */
+    private static void run(ONNXDynamicInferenceEngine engine, List<List<LogEvent>> batches,
+                            List<List<TokenizedInput>> encoded, int workers) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        for (int w = 0; w < workers; w++) {
+            pool.execute(() -> {
+                for (int b; (b = next.getAndIncrement()) < batches.size(); ) {
+                    engine.runEncoded(batches.get(b), encoded.get(b));
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+    }
+
+    private static String message(int i) {
+        switch (i % 4) {
+            case 0:  return "User john.doe" + i + "@test.com updated SSN 123-45-" + String.format("%04d", i % 10_000);
+            case 1:  return "Call back at (555) 010-" + String.format("%04d", i % 10_000) + " regarding claim " + i;
+            case 2:  return "Shipping to " + (100 + i % 900) + " Main St, Springfield, IL 62704 for order " + i;
+            default: return "Provider NPI 1234567893 submitted batch " + i + " with status OK";
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.securelogx.main;
+
+import com.securelogx.ner.TokenizedInput;
+import com.securelogx.ner.impl.LabelAwareMaskingEngine;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decode-and-mask microbenchmark: times {@link LabelAwareMaskingEngine#mask} against the previous
+ * span-set/sort/replace implementation (kept below as {@code legacyMask}) on the same labelled
+ * messages, and prints ns and allocated bytes per message. No model is needed: messages are
+ * split into word/punctuation tokens and labelled from regex matches of their entities.
+ *
+ * Usage: MaskingBenchmark [messages=10000] [rounds=20]
+ */
+public class MaskingBenchmark {
+
+    private static final String[] LABELS = {
+            "O", "B-EMAIL", "I-EMAIL", "B-SSN", "I-SSN",
+            "B-NPI", "I-NPI", "B-ADDRESS", "I-ADDRESS",
+            "B-PHONE", "I-PHONE"
+    };
+    private static final Pattern[] ENTITIES = {
+            Pattern.compile("[\\w.]+@\\w+\\.com"),            // EMAIL → B label 1
+            Pattern.compile("\\d{3}-\\d{2}-\\d{4}"),          // SSN   → 3
+            Pattern.compile("\\b\\d{10}\\b"),                 // NPI   → 5
+            Pattern.compile("\\d+ Main St"),                  // ADDRESS → 7
+            Pattern.compile("\\(\\d{3}\\) \\d{3}-\\d{4}")     // PHONE → 9
+    };
+
+    private interface Masker {
+        String mask(String text, TokenizedInput enc, byte[] labels);
+    }
+
+    public static void main(String[] args) {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        List<String> texts = new ArrayList<>(messages);
+        List<TokenizedInput> encoded = new ArrayList<>(messages);
+        List<byte[]> labels = new ArrayList<>(messages);
+        for (int i = 0; i < messages; i++) {
+            String text = message(i);
+            TokenizedInput enc = new TokenizedInput();
+            texts.add(text);
+            encoded.add(enc);
+            labels.add(tokenizeAndLabel(text, enc));
+        }
+
+        LabelAwareMaskingEngine engine = new LabelAwareMaskingEngine();
+        Masker current = (text, enc, l) -> engine.mask(text, enc, l, enc.length(), true);
+        Masker legacy = (text, enc, l) -> legacyMask(text, enc, l, true);
+
+        for (int i = 0; i < messages; i++) {
+            String a = current.mask(texts.get(i), encoded.get(i), labels.get(i));
+            String b = legacy.mask(texts.get(i), encoded.get(i), labels.get(i));
+            if (!a.equals(b)) {
+                throw new IllegalStateException("Output differs for: " + texts.get(i) + "\n  " + a + "\n  " + b);
+            }
+        }
+
+        System.out.println("----- Masking (" + messages + " messages x " + rounds + " rounds) -----");
+        System.out.println("impl       ns/msg  bytes/msg");
+        for (int pass = 0; pass < 2; pass++) { // first pass is warm-up
+            boolean print = pass == 1;
+            measure("legacy", legacy, texts, encoded, labels, rounds, print);
+            measure("current", current, texts, encoded, labels, rounds, print);
+        }
+    }
+
+    private static void measure(String name, Masker masker, List<String> texts, List<TokenizedInput> encoded,
+                                List<byte[]> labels, int rounds, boolean print) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long sink = 0;
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < texts.size(); i++) {
+                sink += masker.mask(texts.get(i), encoded.get(i), labels.get(i)).length();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        long total = (long) rounds * texts.size();
+        if (print) {
+            System.out.printf("%-8s %8.1f  %9.1f%s%n", name, (double) elapsed / total, (double) allocated / total,
+                    sink == 0 ? " (empty)" : "");
+        }
+    }
+
+    /** Word/punctuation tokens framed by [CLS]/[SEP]; returns their B-/I- labels from {@link #ENTITIES}. */
+    private static byte[] tokenizeAndLabel(String text, TokenizedInput enc) {
+        enc.clear();
+        enc.add(101, -1, -1);
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            if (Character.isLetterOrDigit(c)) {
+                while (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+            enc.add(1000 + (text.charAt(start) & 0xff), start, i);
+        }
+        enc.add(102, -1, -1);
+
+        byte[] labels = new byte[enc.length()];
+        for (int e = 0; e < ENTITIES.length; e++) {
+            Matcher m = ENTITIES[e].matcher(text);
+            while (m.find()) {
+                boolean first = true;
+                for (int t = 1; t < enc.length() - 1; t++) {
+                    if (enc.getStart(t) >= m.start() && enc.getEnd(t) <= m.end()) {
+                        labels[t] = (byte) (first ? 2 * e + 1 : 2 * e + 2);
+                        first = false;
+                    }
+                }
+            }
+        }
+        return labels;
+    }
+
+    private static String message(int i) {
+        switch (i % 5) {
+            case 0:  return "User john.doe" + i + "@test.com updated SSN 123-45-" + String.format("%04d", i % 10_000);
+            case 1:  return "Call back at (555) 010-" + String.format("%04d", i % 10_000) + " regarding claim " + i;
+            case 2:  return "Shipping to " + (100 + i % 900) + " Main St, Springfield, IL 62704 for order " + i;
+            case 3:  return "Provider NPI 1234567893 submitted batch " + i + " with status OK";
+            default: return "Health check " + i + " passed in 12ms, no action required";
+        }
+    }
+
+    /** The decode-and-mask path before the single-pass rewrite, as the baseline. */
+    private static String legacyMask(String originalText, TokenizedInput encoded, byte[] labels, boolean showLastFour) {
+        StringBuilder maskedText = new StringBuilder(originalText);
+        Set<Integer> maskedPositions = new HashSet<>();
+        int totalTokens = encoded.length();
+
+        List<int[]> spans = new ArrayList<>();
+        int i = 0;
+        while (i < totalTokens) {
+            int pred = labels[i];
+            String label = LABELS[pred];
+            if (label.startsWith("B-")) {
+                int start = encoded.getStart(i);
+                int end = encoded.getEnd(i);
+                String entityType = label.substring(2);
+
+                int j = i + 1;
+                while (j < totalTokens && LABELS[labels[j]].equals("I-" + entityType)) {
+                    end = encoded.getEnd(j);
+                    j++;
+                }
+                if (start >= 0 && end > start && end <= maskedText.length()) {
+                    spans.add(new int[]{start, end, pred});
+                    for (int pos = start; pos < end; pos++) {
+                        maskedPositions.add(pos);
+                    }
+                }
+                i = j;
+            } else {
+                i++;
+            }
+        }
+
+        spans.sort((a, b) -> Integer.compare(b[0], a[0]));
+        for (int[] span : spans) {
+            String original = maskedText.substring(span[0], span[1]);
+            maskedText.replace(span[0], span[1], legacyMaskSpan(original, LABELS[span[2]], showLastFour));
+        }
+        return maskedText.toString();
+    }
+
+    private static String legacyMaskSpan(String text, String label, boolean showLastFour) {
+        String entityType = label.replaceAll("^[BI]-", "");
+        boolean allowLastFour = showLastFour && (entityType.equalsIgnoreCase("SSN")
+                || entityType.equalsIgnoreCase("NPI") || entityType.equalsIgnoreCase("PHONE")
+                || entityType.equalsIgnoreCase("CARD"));
+
+        int digitsFound = 0;
+        for (int i = text.length() - 1; i >= 0; i--) {
+            if (Character.isDigit(text.charAt(i))) {
+                digitsFound++;
+            }
+        }
+        int revealStartPosition = -1;
+        if (allowLastFour && digitsFound >= 4) {
+            int count = 0;
+            for (int i = text.length() - 1; i >= 0; i--) {
+                if (Character.isDigit(text.charAt(i)) && ++count == 4) {
+                    revealStartPosition = i;
+                    break;
+                }
+            }
+        }
+
+        StringBuilder masked = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)
+                    && !(allowLastFour && revealStartPosition != -1 && i >= revealStartPosition)) {
+                masked.append('•');
+            } else {
+                masked.append(c);
+            }
+        }
+        return masked.toString();
+    }
+}
@@ -0,0 +1,119 @@
+package com.securelogx.main;
+
+import com.securelogx.engine.RingBuffer;
+import com.securelogx.engine.WaitStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hand-off contention benchmark: 1 to 64 producer threads offer events to one consumer that
+ * drains them in batches, as application threads do to the batcher. Compares the
+ * {@code ArrayBlockingQueue} the engine used before with the lock-free {@link RingBuffer} under
+ * each {@link WaitStrategy}, and prints throughput in million events per second.
+ * A producer that finds the buffer full retries, so every event is counted once.
+ *
+ * Usage: RingBufferBenchmark [eventsPerRun=4000000] [capacity=16384] [maxProducers=64]
+ */
+public class RingBufferBenchmark {
+
+    private static final int DRAIN = 256;
+    private static final Object EVENT = new Object();
+
+    /** The two operations the engine uses on a hand-off. */
+    private interface Transport {
+        boolean offer(Object e);
+
+        Object poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+        int drainTo(List<Object> sink, int max);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 4_000_000;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 16_384;
+        int maxProducers = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+
+        String[] names = {"ArrayBlockingQueue", "Ring/BUSY_SPIN", "Ring/YIELD", "Ring/PARK"};
+        System.out.println("----- Hand-off contention (" + events + " events per run, capacity " + capacity + ") -----");
+        StringBuilder header = new StringBuilder(String.format("%-10s", "producers"));
+        for (String name : names) {
+            header.append(String.format("%20s", name));
+        }
+        System.out.println(header + "   (M events/s)");
+
+        for (int producers = 1; producers <= maxProducers; producers <<= 1) {
+            StringBuilder row = new StringBuilder(String.format("%-10d", producers));
+            for (int t = 0; t < names.length; t++) {
+                run(transport(t, capacity), producers, events / 4); // warm-up
+                double best = 0;
+                for (int rep = 0; rep < 3; rep++) {
+                    best = Math.max(best, run(transport(t, capacity), producers, events));
+                }
+                row.append(String.format("%20.2f", best / 1e6));
+            }
+            System.out.println(row);
+        }
+    }
+
+    private static Transport transport(int kind, int capacity) {
+        if (kind == 0) {
+            ArrayBlockingQueue<Object> q = new ArrayBlockingQueue<>(capacity);
+            return new Transport() {
+                public boolean offer(Object e) { return q.offer(e); }
+                public Object poll(long timeout, TimeUnit unit) throws InterruptedException { return q.poll(timeout, unit); }
+                public int drainTo(List<Object> sink, int max) { return q.drainTo(sink, max); }
+            };
+        }
+        RingBuffer<Object> ring = new RingBuffer<>(capacity, WaitStrategy.values()[kind - 1]);
+        return new Transport() {
+            public boolean offer(Object e) { return ring.offer(e); }
+            public Object poll(long timeout, TimeUnit unit) throws InterruptedException { return ring.poll(timeout, unit); }
+            public int drainTo(List<Object> sink, int max) { return ring.drainTo(sink, max); }
+        };
+    }
+
+    /** Returns events per second for {@code producers} threads offering {@code events} in total. */
+    private static double run(Transport transport, int producers, int events) throws Exception {
+        int perProducer = events / producers;
+        int total = perProducer * producers;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            Thread producer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    while (!transport.offer(EVENT)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }, "SecureLogXBenchProducer-" + p);
+            producer.start();
+            threads.add(producer);
+        }
+
+        List<Object> sink = new ArrayList<>(DRAIN);
+        long began = System.nanoTime();
+        start.countDown();
+        int received = 0;
+        while (received < total) {
+            Object first = transport.poll(200, TimeUnit.MILLISECONDS);
+            if (first != null) {
+                received += 1 + transport.drainTo(sink, DRAIN - 1);
+                sink.clear();
+            }
+        }
+        long elapsed = System.nanoTime() - began;
+        for (Thread t : threads) {
+            t.join();
+        }
+        return total * 1e9 / elapsed;
+    }
+}
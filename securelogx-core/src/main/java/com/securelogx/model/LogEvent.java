@@ -3,6 +3,7 @@ package com.securelogx.model;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.securelogx.model.LogLevel;
 import com.securelogx.util.CachedClock;
+import com.securelogx.util.LogLineEncoder;
 import java.util.UUID;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
@@ -60,6 +61,14 @@ public class LogEvent {
 
     public String getId() { return id; }
 
+    /** This event with {@code message} in place of its message; timestamp and id are kept. */
+    public LogEvent withMessage(String message) {
+        LogEvent copy = new LogEvent(message, level, showLastFour, traceId, sequenceNumber);
+        copy.timestamp = timestamp;
+        copy.id = id;
+        return copy;
+    }
+
     public String toJson() {
         try {
             return MAPPER.writeValueAsString(this);
@@ -82,7 +91,7 @@ public class LogEvent {
             LogLevel lvl = LogLevel.valueOf(m.group(1));
             String trace = m.group(2);
             int seq = Integer.parseInt(m.group(3));
-            String msg = m.group(4);
+            String msg = LogLineEncoder.unescape(m.group(4));
             return new LogEvent(msg, lvl, false, trace, seq);
         } else {
             // Fallback: treat the entire raw string as the message
@@ -1,30 +1,70 @@
 package com.securelogx.ner;
 
-import java.util.List;
+import java.util.Arrays;
 
 /**
- * Holds the token ID + attention mask arrays
+ * Holds the token IDs and token→char offsets of one encoded message.
+ * <p>
+ * Backed by primitive arrays that grow on demand and are kept across {@link #clear()},
+ * so one instance can be reused for every message a thread encodes. Offsets are stored
+ * flat as {@code [start0, end0, start1, end1, ...]}; special tokens carry {@code -1, -1}.
+ * Only the first {@link #length()} entries of the backing arrays are valid.
+ * The attention mask is implicit: 1 for every token below {@link #length()}.
  */
 public class TokenizedInput {
-    private final int[] inputIds;
-    private final int[] attentionMask;
-    private final List<int[]> offsets;
+    private static final int DEFAULT_CAPACITY = 64;
 
-    public TokenizedInput(int[] inputIds, int[] attentionMask, List<int[]> offsets) {
-        this.inputIds = inputIds;
-        this.attentionMask = attentionMask;
-        this.offsets = offsets;
+    private int[] inputIds;
+    private int[] offsets;
+    private int length;
+
+    public TokenizedInput() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TokenizedInput(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 2);
+        this.inputIds = new int[capacity];
+        this.offsets = new int[capacity * 2];
+    }
+
+    /** Resets the length to zero, keeping the backing arrays for reuse. */
+    public void clear() {
+        length = 0;
+    }
+
+    /** Appends one token with its char span in the original text. */
+    public void add(int tokenId, int start, int end) {
+        if (length == inputIds.length) {
+            int capacity = inputIds.length << 1;
+            inputIds = Arrays.copyOf(inputIds, capacity);
+            offsets = Arrays.copyOf(offsets, capacity * 2);
+        }
+        inputIds[length] = tokenId;
+        offsets[length * 2] = start;
+        offsets[length * 2 + 1] = end;
+        length++;
     }
 
+    public int length() {
+        return length;
+    }
+
+    /** Backing ID array; valid up to {@link #length()}. */
     public int[] getInputIds() {
         return inputIds;
     }
 
-    public int[] getAttentionMask() {
-        return attentionMask;
+    /** Backing flat offset array; valid up to {@code 2 * length()}. */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    public int getStart(int token) {
+        return offsets[token * 2];
     }
 
-    public List<int[]> getOffsets() {
-        return offsets;
+    public int getEnd(int token) {
+        return offsets[token * 2 + 1];
     }
 }
@@ -1,9 +1,39 @@
 package com.securelogx.ner;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Converts input log text → token IDs
  */
 
 public interface TokenizerEngine {
-    TokenizedInput tokenize(String text);
+    /** Encodes {@code text} into a fresh buffer. */
+    default TokenizedInput tokenize(String text) {
+        TokenizedInput out = new TokenizedInput();
+        tokenize(text, out);
+        return out;
+    }
+
+    /** Encodes {@code text} into {@code out}, clearing it first and reusing its arrays. */
+    void tokenize(String text, TokenizedInput out);
+
+    /**
+     * Encodes {@code texts.get(i)} into {@code out.get(i)} for every i and returns once all are done.
+     * {@code out} must hold at least {@code texts.size()} buffers.
+     */
+    default void tokenizeAll(List<String> texts, List<TokenizedInput> out) {
+        for (int i = 0; i < texts.size(); i++) {
+            tokenize(texts.get(i), out.get(i));
+        }
+    }
+
+    /**
+     * Starts {@link #tokenizeAll} without blocking the caller, so a batch can be encoded while the
+     * previous one is still in inference. The default runs synchronously.
+     */
+    default CompletableFuture<Void> tokenizeAllAsync(List<String> texts, List<TokenizedInput> out) {
+        tokenizeAll(texts, out);
+        return CompletableFuture.completedFuture(null);
+    }
 }
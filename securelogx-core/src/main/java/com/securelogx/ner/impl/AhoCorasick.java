@@ -0,0 +1,162 @@
+package com.securelogx.ner.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable Aho-Corasick automaton over lower-cased chars, used by {@link LearnedPiiDictionary}.
+ * <p>
+ * Edges are flattened like in {@link WordPieceTrie}: node {@code n}'s edges are
+ * {@code labels/targets[firstEdge[n] .. firstEdge[n + 1])}, sorted by label. Each node also stores
+ * the longest pattern ending there (directly or via its fail chain), so one pass over the text
+ * reports the longest match ending at every position.
+ */
+final class AhoCorasick {
+
+    private final int[] firstEdge;
+    private final char[] labels;
+    private final int[] targets;
+    private final int[] fail;
+    private final int[] outLength;
+    private final int[] outType;
+
+    private AhoCorasick(int[] firstEdge, char[] labels, int[] targets, int[] fail, int[] outLength, int[] outType) {
+        this.firstEdge = firstEdge;
+        this.labels = labels;
+        this.targets = targets;
+        this.fail = fail;
+        this.outLength = outLength;
+        this.outType = outType;
+    }
+
+    /** @param types {@code types[i]} is reported for matches of {@code patterns.get(i)} */
+    static AhoCorasick build(List<char[]> patterns, int[] types) {
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<int[]> outputs = new ArrayList<>(); // {length, type}
+        children.add(new TreeMap<>());
+        outputs.add(new int[]{0, -1});
+        for (int p = 0; p < patterns.size(); p++) {
+            char[] pattern = patterns.get(p);
+            int node = 0;
+            for (char raw : pattern) {
+                char c = Character.toLowerCase(raw);
+                Integer next = children.get(node).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.get(node).put(c, next);
+                    children.add(new TreeMap<>());
+                    outputs.add(new int[]{0, -1});
+                }
+                node = next;
+            }
+            outputs.get(node)[0] = pattern.length;
+            outputs.get(node)[1] = types[p];
+        }
+
+        int nodes = children.size();
+        int edges = 0;
+        for (TreeMap<Character, Integer> c : children) {
+            edges += c.size();
+        }
+        int[] firstEdge = new int[nodes + 1];
+        char[] labels = new char[edges];
+        int[] targets = new int[edges];
+        int e = 0;
+        for (int n = 0; n < nodes; n++) {
+            firstEdge[n] = e;
+            for (Map.Entry<Character, Integer> edge : children.get(n).entrySet()) {
+                labels[e] = edge.getKey();
+                targets[e] = edge.getValue();
+                e++;
+            }
+        }
+        firstEdge[nodes] = e;
+
+        int[] outLength = new int[nodes];
+        int[] outType = new int[nodes];
+        for (int n = 0; n < nodes; n++) {
+            outLength[n] = outputs.get(n)[0];
+            outType[n] = outputs.get(n)[1];
+        }
+
+        // Breadth-first fail links; a node without its own pattern inherits its fail target's output
+        int[] fail = new int[nodes];
+        AhoCorasick ac = new AhoCorasick(firstEdge, labels, targets, fail, outLength, outType);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int k = firstEdge[0]; k < firstEdge[1]; k++) {
+            queue.add(targets[k]);
+        }
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            for (int k = firstEdge[u]; k < firstEdge[u + 1]; k++) {
+                int v = targets[k];
+                int f = fail[u];
+                int next;
+                while ((next = ac.child(f, labels[k])) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[v] = next >= 0 ? next : 0;
+                if (outLength[v] == 0) {
+                    outLength[v] = outLength[fail[v]];
+                    outType[v] = outType[fail[v]];
+                }
+                queue.add(v);
+            }
+        }
+        return ac;
+    }
+
+    /**
+     * Leftmost-longest, non-overlapping matches in {@code text} that start and end on a word
+     * boundary (not inside a run of letters or digits), as {@code {start, end, type}}.
+     */
+    List<int[]> matches(CharSequence text) {
+        List<int[]> found = new ArrayList<>();
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = child(state, c)) < 0 && state != 0) {
+                state = fail[state];
+            }
+            state = next >= 0 ? next : 0;
+            int len = outLength[state];
+            if (len > 0) {
+                int start = i + 1 - len;
+                if (isBoundary(text, start - 1) && isBoundary(text, i + 1)) {
+                    found.add(new int[]{start, i + 1, outType[state]});
+                }
+            }
+        }
+        if (found.size() < 2) {
+            return found;
+        }
+        found.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(b[1], a[1]));
+        List<int[]> chosen = new ArrayList<>(found.size());
+        int end = -1;
+        for (int[] m : found) {
+            if (m[0] >= end) {
+                chosen.add(m);
+                end = m[1];
+            }
+        }
+        return chosen;
+    }
+
+    int nodeCount() {
+        return outLength.length;
+    }
+
+    private int child(int node, char c) {
+        int k = Arrays.binarySearch(labels, firstEdge[node], firstEdge[node + 1], c);
+        return k >= 0 ? targets[k] : -1;
+    }
+
+    private static boolean isBoundary(CharSequence text, int i) {
+        return i < 0 || i >= text.length() || !Character.isLetterOrDigit(text.charAt(i));
+    }
+}
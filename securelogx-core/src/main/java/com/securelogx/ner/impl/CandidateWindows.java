@@ -0,0 +1,89 @@
+package com.securelogx.ner.impl;
+
+import com.securelogx.ner.TokenizedInput;
+
+/**
+ * Finds the token regions of a long message worth sending to the model.
+ * <p>
+ * The {@link PiiPrefilter} rules mark candidate positions (digits, trigger chars, street/unit
+ * keywords); each one becomes a window of {@code radius} tokens on either side of the word it
+ * falls in, and overlapping or touching windows are merged. {@link WindowPlan} frames the regions
+ * as model rows; tokens outside every region are labelled {@code O}. Token offsets always point
+ * into the original message, so predicted spans need no remapping.
+ * <p>
+ * Only messages over {@code minTokens} are windowed; shorter ones are cheap enough to run whole.
+ */
+final class CandidateWindows {
+
+    private final PiiPrefilter scanner;
+    private final int radius;
+    private final int minTokens;
+
+    CandidateWindows(PiiPrefilter scanner, int radius, int minTokens) {
+        this.scanner = scanner;
+        this.radius = Math.max(1, radius);
+        this.minTokens = minTokens;
+    }
+
+    boolean appliesTo(TokenizedInput enc) {
+        return enc.length() > minTokens;
+    }
+
+    /** Receives merged regions in ascending order. */
+    interface RegionSink {
+        void region(int from, int to);
+    }
+
+    /**
+     * Emits the merged candidate regions of {@code text} as content-token ranges {@code [from, to)};
+     * emits nothing if the message has no candidate at all.
+     */
+    void regions(CharSequence text, TokenizedInput enc, RegionSink sink) {
+        int contentEnd = enc.length() - 1; // [SEP]
+        int regionFrom = -1;
+        int regionTo = -1;
+        int pos = scanner.nextTrigger(text, 0);
+        while (pos >= 0) {
+            int t = tokenAt(enc, pos);
+            if (t >= contentEnd) {
+                break;
+            }
+            // Cover every piece of the word the trigger sits in
+            int wordStart = enc.getStart(t);
+            int last = t;
+            while (last + 1 < contentEnd && enc.getStart(last + 1) == wordStart) {
+                last++;
+            }
+            int from = Math.max(1, t - radius);
+            int to = Math.min(contentEnd, last + 1 + radius);
+            if (regionFrom >= 0 && from <= regionTo) {
+                regionTo = Math.max(regionTo, to);
+            } else {
+                if (regionFrom >= 0) {
+                    sink.region(regionFrom, regionTo);
+                }
+                regionFrom = from;
+                regionTo = to;
+            }
+            pos = scanner.nextTrigger(text, Math.max(pos + 1, enc.getEnd(last)));
+        }
+        if (regionFrom >= 0) {
+            sink.region(regionFrom, regionTo);
+        }
+    }
+
+    /** First content token whose word ends after {@code charPos} (the token at or just after it). */
+    private static int tokenAt(TokenizedInput enc, int charPos) {
+        int lo = 1;
+        int hi = enc.length() - 1; // exclusive: [SEP]
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (enc.getEnd(mid) <= charPos) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
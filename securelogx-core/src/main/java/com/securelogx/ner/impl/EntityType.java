@@ -0,0 +1,34 @@
+package com.securelogx.ner.impl;
+
+/**
+ * PII entity types, in model label order: type {@code t} is predicted as {@code B-t} (label id
+ * {@code 2 * t.ordinal() + 1}) followed by {@code I-t} ({@code 2 * t.ordinal() + 2}); id 0 is
+ * {@code O}. Types after the model's last label are only produced by non-model detectors.
+ */
+public enum EntityType {
+    EMAIL(false),
+    SSN(true),
+    NPI(true),
+    ADDRESS(false),
+    PHONE(true),
+    CARD(true),
+    IPV4(false);
+
+    private static final EntityType[] VALUES = values();
+
+    private final boolean revealsLastFour;
+
+    EntityType(boolean revealsLastFour) {
+        this.revealsLastFour = revealsLastFour;
+    }
+
+    /** Whether the last four digits may stay visible when a log asks for {@code showLastFour}. */
+    public boolean revealsLastFour() {
+        return revealsLastFour;
+    }
+
+    /** Type with the given ordinal, without copying {@link #values()}. */
+    public static EntityType of(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,109 @@
+package com.securelogx.ner.impl;
+
+import com.securelogx.model.LogEvent;
+import com.securelogx.ner.TokenizedInput;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One tokenized SECURE batch on its way through the masking stages of
+ * {@link ONNXDynamicInferenceEngine}: {@code tensorize → infer → decode → format}.
+ * <p>
+ * Each stage fills in the state the next one needs, so consecutive stages may run on different
+ * threads. A job is handed over, never shared: at most one stage touches it at a time. Once a
+ * stage fails, the later ones skip the job and {@link #getLines()} stays empty.
+ * <p>
+ * Byte-identical messages are collapsed first: only the distinct ones not already in the
+ * {@link MaskResultCache} ({@code modelEvents}) are sent to the model, and every event is masked
+ * from the spans of its representative.
+ * <p>
+ * The unit of collapsing and inference is a text: a flat message, or one free-text value of a
+ * JSON/XML message prepared by {@link StructuredMasker}. Event {@code i} owns texts
+ * {@code [firstText[i], firstText[i + 1])}.
+ */
+public class InferenceJob {
+    private final List<LogEvent> events;
+    private final List<TokenizedInput> encoded;
+    private final long queuedSince;
+    private final long dispatchedAt;
+    private final int bucket;
+
+    // Stage state
+    StructuredPayload[] payloads;   // per event: prepared JSON/XML message, or null for flat text
+    int[] firstText;                // per event, plus one: first text owned by the event
+    MaskResultCache.Key[] keys;     // per text
+    int[][] spans;                  // per text: cached spans, or null until decoded
+    int[] modelIndex;               // per text: index into modelEvents, -1 if cached
+    List<LogEvent> modelEvents;     // distinct uncached texts, in first-seen order
+    List<MaskResultCache.Key> modelKeys;
+    List<TokenizedInput> modelEncoded; // null entries are tokenized by tensorize
+    WindowPlan plan;
+    TensorArena.Slot[] slots;
+    byte[] rowLabels;               // pooled, from infer until decode returns it
+    long realTokens;                // attended tokens in the tensors built
+    long paddedTokens;              // rows * seqLen of the tensors built
+    final List<String> masked;
+    final List<String> lines;
+    boolean failed;
+
+    /**
+     * @param encoded     {@code encoded.get(i)} holds the tokens of {@code events.get(i)}; may be
+     *                    null if only the model messages are tokenized later
+     * @param queuedSince when the oldest event of the batch was queued (epoch millis)
+     */
+    public InferenceJob(List<LogEvent> events, List<TokenizedInput> encoded, long queuedSince) {
+        this(events, encoded, queuedSince, -1);
+    }
+
+    /** @param bucket length bucket the batch was dispatched from, for padding statistics */
+    public InferenceJob(List<LogEvent> events, List<TokenizedInput> encoded, long queuedSince, int bucket) {
+        this.bucket = bucket;
+        this.events = events;
+        this.encoded = encoded;
+        this.queuedSince = queuedSince;
+        this.dispatchedAt = System.currentTimeMillis();
+        this.masked = new ArrayList<>(events.size());
+        this.lines = new ArrayList<>(events.size());
+    }
+
+    public List<LogEvent> getEvents() {
+        return events;
+    }
+
+    public List<TokenizedInput> getEncoded() {
+        return encoded;
+    }
+
+    public long getQueuedSince() {
+        return queuedSince;
+    }
+
+    public long getDispatchedAt() {
+        return dispatchedAt;
+    }
+
+    /** Length bucket the batch came from, or -1. */
+    public int getBucket() {
+        return bucket;
+    }
+
+    /** Attended tokens in the input tensors actually built (after dedup, cache hits and windowing). */
+    public long getRealTokens() {
+        return realTokens;
+    }
+
+    /** Tensor slots ({@code rows * seqLen}) of the input tensors actually built. */
+    public long getPaddedTokens() {
+        return paddedTokens;
+    }
+
+    /** Formatted output lines, one per event; empty until the format stage ran or if a stage failed. */
+    public List<String> getLines() {
+        return lines;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+}
@@ -1,184 +1,197 @@
 package com.securelogx.ner.impl;
 
-import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import com.securelogx.ner.TokenizedInput;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
 
 /**
  * LabelAwareMaskingEngine
- * - First masks using regex fallback (SSN, EMAIL) on original text
+ * - Optionally masks deterministic formats first with a {@link PatternDetector} fallback
  * - Then applies AI model masking (from ONNX)
  * - Decides to show last 4 digits only for specific entity types
+ * <p>
+ * Decoding and masking are one forward pass each: predicted label ids are folded into
+ * {@code {start, end, EntityType ordinal}} spans, and the spans are masked into a per-thread
+ * {@code char[]} copy of the text. Masking never changes the text length (each letter or digit
+ * becomes {@code •}), so offsets stay valid and nothing is allocated per token.
  */
 public class LabelAwareMaskingEngine {
 
-    private final String[] labelMap;
-    private final boolean enableFallback;
-    // Fallback regex patterns
-    private static final Pattern SSN_PATTERN = Pattern.compile("\\b\\d{3}-\\d{2}-\\d{4}\\b");
-    private static final Pattern EMAIL_PATTERN = Pattern.compile("\\b[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}\\b");
+    /** Model output labels: {@code O}, then {@code B-}/{@code I-} per {@link EntityType}, in its order. */
+    private static final String[] LABELS = {
+            "O", "B-EMAIL", "I-EMAIL", "B-SSN", "I-SSN",
+            "B-NPI", "I-NPI", "B-ADDRESS", "I-ADDRESS",
+            "B-PHONE", "I-PHONE"
+    };
+    private static final int REVEAL_DIGITS = 4;
+    private static final char MASK = '•';
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final PatternDetector fallback;
+    private volatile BiConsumer<String, String> entityListener;
+
+    /** @param fallback masks its formats before the model's spans are applied; may be null */
+    public LabelAwareMaskingEngine(PatternDetector fallback) {
+        this.fallback = fallback;
+    }
 
     public LabelAwareMaskingEngine(boolean enableFallback) {
-        this.enableFallback = enableFallback;
-        this.labelMap = new String[]{
-                "O", "B-EMAIL", "I-EMAIL", "B-SSN", "I-SSN",
-                "B-NPI", "I-NPI", "B-ADDRESS", "I-ADDRESS",
-                "B-PHONE", "I-PHONE"
-        };
+        this(enableFallback ? PatternDetector.all() : null);
     }
 
-    /** Default: fallback enabled */
+    /** Receives {@code (entityType, originalValue)} for every span the model masks, e.g. a {@link LearnedPiiDictionary}. */
+    public void setEntityListener(BiConsumer<String, String> listener) {
+        this.entityListener = listener;
+    }
+
+    /** Default: fallback disabled */
     public LabelAwareMaskingEngine() {
-        this(false);
+        this((PatternDetector) null);
     }
 
     /**
      * @param originalText   the raw log text (plain, XML or JSON)
-     * @param inputIds       token IDs from your HF tokenizer
-     * @param logits         ONNX model outputs
-     * @param offsets        token→char offsets
+     * @param encoded        token IDs and token→char offsets from the tokenizer
+     * @param labels         predicted label id per token (argmax of the ONNX outputs)
+     * @param labelled       number of leading tokens that have a label in {@code labels}
      * @param showLastFour   whether to reveal last-4 digits
      */
-        public String mask(String originalText, int[] inputIds, float[][][] logits, List<int[]> offsets, boolean showLastFour) {
-            // 1) optionally apply regex fallback
-            String textForAI = enableFallback
-                    ? fallbackMask(originalText)
-                    : originalText;
+    public String mask(String originalText, TokenizedInput encoded, byte[] labels, int labelled, boolean showLastFour) {
+        Scratch scratch = SCRATCH.get();
+        int count = decode(originalText.length(), encoded, labels, labelled, scratch);
+        return apply(originalText, scratch.spans, count, showLastFour);
+    }
 
-            // 2) AI-driven masking on textForAI
-            StringBuilder maskedText = new StringBuilder(textForAI);
-            Set<Integer> maskedPositions = new HashSet<>();
+    /**
+     * Entity spans predicted for {@code originalText} as flat {@code {start, end, EntityType ordinal}}
+     * triples in text order. Spans depend only on the text, so they can be cached and re-applied to
+     * an identical message with {@link #apply}.
+     */
+    public int[] spans(String originalText, TokenizedInput encoded, byte[] labels, int labelled) {
+        Scratch scratch = SCRATCH.get();
+        int count = decode(originalText.length(), encoded, labels, labelled, scratch);
+        return Arrays.copyOf(scratch.spans, count);
+    }
 
-            int totalTokens = Math.min(logits[0].length, offsets.size());
+    /** Masks {@code originalText} (after the optional detector fallback) at {@code spans} from {@link #spans}. */
+    public String apply(String originalText, int[] spans, boolean showLastFour) {
+        return apply(originalText, spans, spans.length, showLastFour);
+    }
 
-        List<int[]> spans = new ArrayList<>();
+    /**
+     * Folds {@code B-X I-X*} label runs into spans in {@code scratch.spans}; returns the number of
+     * ints written. Orphan {@code I-} labels and spans outside the text are skipped.
+     */
+    private static int decode(int textLength, TokenizedInput encoded, byte[] labels, int labelled, Scratch scratch) {
+        int totalTokens = Math.min(labelled, encoded.length());
+        int[] offsets = encoded.getOffsets();
+        int n = 0;
         int i = 0;
         while (i < totalTokens) {
-            int pred = argmax(logits[0][i]);
-            if (pred >= labelMap.length) { i++; continue; }
-
-            String label = labelMap[pred];
-            if (label.startsWith("B-")) {
-                int start = offsets.get(i)[0];
-                int end = offsets.get(i)[1];
-                String entityType = label.substring(2);
-
-                int j = i + 1;
-                while (j < totalTokens) {
-                    int nextPred = argmax(logits[0][j]);
-                    String nextLabel = nextPred < labelMap.length ? labelMap[nextPred] : "O";
-                    if (nextLabel.equals("I-" + entityType)) {
-                        end = offsets.get(j)[1];
-                        j++;
-                    } else {
-                        break;
-                    }
-                }
-
-                if (start >= 0 && end > start && end <= maskedText.length()) {
-                    spans.add(new int[]{start, end, pred});
-                    for (int pos = start; pos < end; pos++) {
-                        maskedPositions.add(pos);
-                    }
-                }
-                i = j;
-            } else {
+            int pred = labels[i];
+            // B- labels are the odd ids; O and I- labels never open a span
+            if (pred <= 0 || pred >= LABELS.length || (pred & 1) == 0) {
                 i++;
+                continue;
+            }
+            int inside = pred + 1;
+            int start = offsets[i * 2];
+            int end = offsets[i * 2 + 1];
+            int j = i + 1;
+            while (j < totalTokens && labels[j] == inside) {
+                end = offsets[j * 2 + 1];
+                j++;
             }
+            if (start >= 0 && end > start && end <= textLength) {
+                int[] spans = scratch.spans(n + 3);
+                spans[n] = start;
+                spans[n + 1] = end;
+                spans[n + 2] = (pred - 1) >> 1;
+                n += 3;
+            }
+            i = j;
         }
+        return n;
+    }
 
-        spans.sort((a, b) -> Integer.compare(b[0], a[0]));
-        Set<String> types = new HashSet<>();
-        for (int[] span : spans) {
-            types.add(labelMap[span[2]].replaceAll("^[BI]-", ""));
-            int start = span[0];
-            int end = span[1];
-            String label = labelMap[span[2]];
-            String original = maskedText.substring(start, end);
-            String masked = maskSpan(original, label, showLastFour);
-            maskedText.replace(start, end, masked);
+    private String apply(String originalText, int[] spans, int count, boolean showLastFour) {
+        // 1) optionally apply the deterministic fallback (same length, so spans stay valid)
+        String textForAI = fallback != null
+                ? fallback.mask(originalText, showLastFour)
+                : originalText;
+        if (count == 0) {
+            return textForAI;
         }
 
-      //  System.out.println("[SUMMARY] Types masked (Regex + AI): " + types);
-        return maskedText.toString();
-    }
-
-    private int argmax(float[] scores) {
-        int best = 0;
-        for (int i = 1; i < scores.length; i++) {
-            if (scores[i] > scores[best]) {
-                best = i;
+        // 2) AI-driven masking on textForAI
+        int length = textForAI.length();
+        char[] out = SCRATCH.get().chars(length);
+        textForAI.getChars(0, length, out, 0);
+        BiConsumer<String, String> listener = entityListener;
+        for (int s = 0; s < count; s += 3) {
+            int start = spans[s];
+            int end = spans[s + 1];
+            EntityType type = EntityType.of(spans[s + 2]);
+            if (listener != null) {
+                listener.accept(type.name(), originalText.substring(start, end)); // before any masking
             }
+            maskRange(out, start, end, showLastFour && type.revealsLastFour());
         }
-        return best;
-    }
-
-    private String fallbackMask(String text) {
-        String result = text;
-
-        // Mask SSNs
-        Matcher ssnMatcher = SSN_PATTERN.matcher(result);
-        result = ssnMatcher.replaceAll(match -> maskSpan(match.group(), "SSN", true));
-
-        // Mask Emails
-        Matcher emailMatcher = EMAIL_PATTERN.matcher(result);
-        result = emailMatcher.replaceAll(match -> maskSpan(match.group(), "EMAIL", false));
-
-        return result;
+        return new String(out, 0, length);
     }
 
-    private String maskSpan(String text, String label, boolean showLastFour) {
+    /** Masks all of {@code text} as {@code type}. */
+    static String maskSpan(String text, EntityType type, boolean showLastFour) {
         if (text == null || text.isEmpty()) {
             return text;
         }
+        char[] chars = text.toCharArray();
+        maskRange(chars, 0, chars.length, showLastFour && type.revealsLastFour());
+        return new String(chars);
+    }
 
-        String entityType = label.replaceAll("^[BI]-", ""); // Remove B- or I- from label
-
-        boolean allowLastFour = showLastFour && (
-                entityType.equalsIgnoreCase("SSN") ||
-                        entityType.equalsIgnoreCase("NPI") ||
-                        entityType.equalsIgnoreCase("PHONE") ||
-                        entityType.equalsIgnoreCase("CARD")
-        );
-
-        StringBuilder masked = new StringBuilder();
-        int revealDigits = 4;
-        int digitsFound = 0;
-
-        for (int i = text.length() - 1; i >= 0; i--) {
-            if (Character.isDigit(text.charAt(i))) {
-                digitsFound++;
+    /**
+     * Replaces every letter and digit in {@code chars[start, end)} with {@code •}, keeping
+     * punctuation. With {@code revealLastFour}, everything from the fourth-last digit on stays
+     * visible, provided the span has at least four digits.
+     */
+    static void maskRange(char[] chars, int start, int end, boolean revealLastFour) {
+        int maskEnd = end;
+        if (revealLastFour) {
+            int digits = 0;
+            for (int k = end - 1; k >= start; k--) {
+                if (Character.isDigit(chars[k]) && ++digits == REVEAL_DIGITS) {
+                    maskEnd = k;
+                    break;
+                }
             }
         }
-
-        int revealStartPosition = -1;
-        if (allowLastFour && digitsFound >= revealDigits) {
-            int count = 0;
-            for (int i = text.length() - 1; i >= 0; i--) {
-                if (Character.isDigit(text.charAt(i))) {
-                    count++;
-                    if (count == revealDigits) {
-                        revealStartPosition = i;
-                        break;
-                    }
-                }
+        for (int k = start; k < maskEnd; k++) {
+            if (Character.isLetterOrDigit(chars[k])) {
+                chars[k] = MASK;
             }
         }
+    }
 
-        for (int i = 0; i < text.length(); i++) {
-            char c = text.charAt(i);
+    /** Per-thread span and output buffers, grown on demand. */
+    private static final class Scratch {
+        private int[] spans = new int[48];
+        private char[] chars = new char[1024];
 
-            if (Character.isLetterOrDigit(c)) {
-                if (allowLastFour && revealStartPosition != -1 && i >= revealStartPosition) {
-                    masked.append(c);
-                } else {
-                    masked.append('•');
-                }
-            } else {
-                masked.append(c); // Keep punctuation
+        int[] spans(int size) {
+            if (spans.length < size) {
+                spans = Arrays.copyOf(spans, Math.max(size, spans.length << 1));
             }
+            return spans;
         }
 
-        return masked.toString();
+        char[] chars(int size) {
+            if (chars.length < size) {
+                chars = new char[Math.max(size, chars.length << 1)];
+            }
+            return chars;
+        }
     }
 }
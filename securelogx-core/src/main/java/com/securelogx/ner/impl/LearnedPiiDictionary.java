@@ -0,0 +1,348 @@
+package com.securelogx.ner.impl;
+
+import com.securelogx.config.SecureLogXConfig;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in dictionary of entity values the model has already found, so recurring values
+ * (the same customer's email or SSN across a session) can be masked without inference.
+ * <p>
+ * {@link LabelAwareMaskingEngine} reports every span it masks to {@link #learn}. Entries are
+ * bounded (LRU, {@code securelogx.dictionary.maxEntries}) and expire {@code ttlMs} after they were
+ * last seen. A background thread recompiles the live entries into an {@link AhoCorasick}
+ * automaton every {@code rebuildMs}, and {@link #lookup} uses it to mask known values
+ * in one linear scan.
+ * <p>
+ * The model is only skipped when the text outside the known values has no pre-filter trigger at
+ * all. Otherwise the dictionary is just a pre-mask and the message is still inferred. The model then
+ * sees bullets where the known values were, so it loses them as context for neighbouring entities,
+ * and a known value is masked even where the model would not flag it in this message. In return, a
+ * value the model found once stays masked on every recurrence, whatever its context.
+ * <p>
+ * The store is not a plaintext PII store: entries are keyed by HMAC-SHA256 and their values kept
+ * AES-GCM encrypted, both under random per-process keys that are never written anywhere. Values
+ * are only decrypted while the automaton is being compiled; the automaton itself lives in memory
+ * only and is replaced on every rebuild.
+ */
+public class LearnedPiiDictionary implements AutoCloseable {
+
+    private static final int GCM_IV_BYTES = 12;
+    private static final int GCM_TAG_BITS = 128;
+    private static final int MAX_VALUE_LENGTH = 256;
+
+    /** Result of {@link #lookup}. */
+    public static final class Match {
+        private final String masked;
+        private final boolean covered;
+
+        Match(String masked, boolean covered) {
+            this.masked = masked;
+            this.covered = covered;
+        }
+
+        /** The message with every known value masked. */
+        public String getMasked() {
+            return masked;
+        }
+
+        /** True if nothing outside the known values has a trigger, so the model can be skipped. */
+        public boolean isCovered() {
+            return covered;
+        }
+    }
+
+    private static final class Entry {
+        final byte[] sealed;
+        final int type;
+        volatile long lastSeen;
+
+        Entry(byte[] sealed, int type, long lastSeen) {
+            this.sealed = sealed;
+            this.type = type;
+            this.lastSeen = lastSeen;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMs;
+    private final int minLength;
+    private final Map<String, Entry> entries;
+    private final CopyOnWriteArrayList<String> types = new CopyOnWriteArrayList<>();
+
+    private final SecretKey valueKey;
+    private final SecretKey indexKey;
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Mac> macs;
+
+    private final ScheduledExecutorService rebuilder;
+    private volatile AhoCorasick automaton;
+    private volatile boolean dirty;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong preMasked = new AtomicLong();
+    private final AtomicLong matchedValues = new AtomicLong();
+    private final AtomicLong learned = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+
+    public LearnedPiiDictionary(SecureLogXConfig config) throws GeneralSecurityException {
+        this(config.getDictionaryMaxEntries(), config.getDictionaryTtlMs(), config.getDictionaryRebuildMs(),
+                config.getDictionaryMinLength());
+    }
+
+    public LearnedPiiDictionary(int maxEntries, long ttlMs, long rebuildMs, int minLength) throws GeneralSecurityException {
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.minLength = minLength;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > LearnedPiiDictionary.this.maxEntries;
+            }
+        };
+
+        KeyGenerator aes = KeyGenerator.getInstance("AES");
+        aes.init(256);
+        this.valueKey = aes.generateKey();
+        KeyGenerator hmac = KeyGenerator.getInstance("HmacSHA256");
+        this.indexKey = hmac.generateKey();
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(indexKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        this.rebuilder = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "SecureLogXDictionary");
+            t.setDaemon(true);
+            return t;
+        });
+        rebuilder.scheduleWithFixedDelay(this::rebuild, rebuildMs, rebuildMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Records a value the model confirmed as {@code entityType}; refreshes its TTL if already known. */
+    public void learn(String entityType, String value) {
+        if (value == null || value.length() < minLength || value.length() > MAX_VALUE_LENGTH
+                || value.indexOf('•') >= 0) {
+            return;
+        }
+        String normalized = value.toLowerCase(Locale.ROOT);
+        String key = index(entityType, normalized);
+        long now = System.currentTimeMillis();
+        if (touch(key, now)) {
+            return;
+        }
+        try {
+            Entry entry = new Entry(seal(normalized), typeIndex(entityType), now);
+            synchronized (entries) {
+                entries.putIfAbsent(key, entry);
+            }
+            learned.incrementAndGet();
+            dirty = true;
+        } catch (GeneralSecurityException e) {
+            System.err.println("[ERROR] Failed to store learned PII value");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Masks every known value in {@code text}. The result is {@linkplain Match#isCovered covered}
+     * if the text left after blanking those values has no {@code scanner} trigger; otherwise it is
+     * only a pre-mask and must still be inferred. Returns {@code null} if no known value occurs.
+     */
+    public Match lookup(String text, boolean showLastFour, PiiPrefilter scanner) {
+        AhoCorasick ac = automaton;
+        if (ac == null) {
+            return null;
+        }
+        lookups.incrementAndGet();
+        List<int[]> spans = ac.matches(text);
+        if (spans.isEmpty()) {
+            return null;
+        }
+
+        char[] remainder = text.toCharArray();
+        for (int[] span : spans) {
+            Arrays.fill(remainder, span[0], span[1], ' ');
+        }
+        boolean covered = scanner.nextTrigger(CharBuffer.wrap(remainder), 0) < 0;
+
+        StringBuilder masked = new StringBuilder(text.length());
+        long now = System.currentTimeMillis();
+        int last = 0;
+        for (int[] span : spans) {
+            String value = text.substring(span[0], span[1]);
+            String type = types.get(span[2]);
+            touch(index(type, value.toLowerCase(Locale.ROOT)), now); // still recurring: keep it alive
+            masked.append(text, last, span[0]);
+            masked.append(LabelAwareMaskingEngine.maskSpan(value, EntityType.valueOf(type), showLastFour));
+            last = span[1];
+        }
+        masked.append(text, last, text.length());
+        (covered ? hits : preMasked).incrementAndGet();
+        matchedValues.addAndGet(spans.size());
+        return new Match(masked.toString(), covered);
+    }
+
+    /** Drops expired entries and recompiles the automaton if anything changed. */
+    void rebuild() {
+        try {
+            long cutoff = System.currentTimeMillis() - ttlMs;
+            List<Entry> live = new ArrayList<>();
+            synchronized (entries) {
+                for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+                    Entry e = it.next();
+                    if (e.lastSeen < cutoff) {
+                        it.remove();
+                        dirty = true;
+                    } else {
+                        live.add(e);
+                    }
+                }
+            }
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+
+            List<char[]> patterns = new ArrayList<>(live.size());
+            int[] patternTypes = new int[live.size()];
+            for (Entry e : live) {
+                patternTypes[patterns.size()] = e.type;
+                patterns.add(open(e.sealed));
+            }
+            automaton = live.isEmpty() ? null : AhoCorasick.build(patterns, patternTypes);
+            for (char[] p : patterns) {
+                Arrays.fill(p, '\0');
+            }
+            rebuilds.incrementAndGet();
+        } catch (Exception e) {
+            System.err.println("[ERROR] Learned PII dictionary rebuild failed");
+            e.printStackTrace();
+        }
+    }
+
+    private boolean touch(String key, long now) {
+        synchronized (entries) {
+            Entry known = entries.get(key);
+            if (known != null) {
+                known.lastSeen = now;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private byte[] seal(String value) throws GeneralSecurityException {
+        byte[] iv = new byte[GCM_IV_BYTES];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, valueKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+        byte[] ct = cipher.doFinal(value.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.allocate(iv.length + ct.length).put(iv).put(ct).array();
+    }
+
+    private char[] open(byte[] sealed) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, valueKey, new GCMParameterSpec(GCM_TAG_BITS, sealed, 0, GCM_IV_BYTES));
+        byte[] plain = cipher.doFinal(sealed, GCM_IV_BYTES, sealed.length - GCM_IV_BYTES);
+        CharBuffer decoded = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(plain));
+        char[] chars = new char[decoded.remaining()];
+        decoded.get(chars);
+        Arrays.fill(decoded.array(), '\0');
+        Arrays.fill(plain, (byte) 0);
+        return chars;
+    }
+
+    private String index(String entityType, String normalized) {
+        Mac mac = macs.get();
+        mac.update(entityType.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        return Base64.getEncoder().encodeToString(mac.doFinal(normalized.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private int typeIndex(String entityType) {
+        types.addIfAbsent(entityType);
+        return types.indexOf(entityType);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    /** Messages fully masked from the dictionary, without inference. */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /** Messages with known values masked that still went to the model. */
+    public long getPreMasked() {
+        return preMasked.get();
+    }
+
+    /** Fraction of looked-up messages that skipped inference (0 before the first lookup). */
+    public double getHitRate() {
+        long total = lookups.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    public long getMatchedValues() {
+        return matchedValues.get();
+    }
+
+    public long getLearned() {
+        return learned.get();
+    }
+
+    public long getRebuilds() {
+        return rebuilds.get();
+    }
+
+    @Override
+    public void close() {
+        rebuilder.shutdownNow();
+        automaton = null;
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LearnedPiiDictionary{entries=%d, lookups=%d, hits=%d, preMasked=%d, hitRate=%.3f, rebuilds=%d}",
+                size(), getLookups(), getHits(), getPreMasked(), getHitRate(), getRebuilds());
+    }
+}
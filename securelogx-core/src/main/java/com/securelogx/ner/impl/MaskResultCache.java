@@ -0,0 +1,208 @@
+package com.securelogx.ner.impl;
+
+import com.securelogx.config.SecureLogXConfig;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of mask results for byte-identical SECURE messages (retry loops, health checks).
+ * <p>
+ * Entries are keyed by SHA-256 of {@code (showLastFour, message)} and hold only the entity spans
+ * found for the message ({@code {start, end, EntityType ordinal}} triples), never its text, so
+ * the cache is no more sensitive than the offsets it stores. A hit re-applies the spans to the incoming message
+ * with {@link LabelAwareMaskingEngine#apply}, skipping tokenization and inference.
+ * <p>
+ * Eviction follows W-TinyLFU: new entries land in a small LRU window (1% of capacity); an entry
+ * leaving the window only enters the main LRU if a count-min sketch of recent accesses says it is
+ * more popular than the main region's LRU victim. One-off messages therefore cannot flush the
+ * recurring ones. The sketch is halved every {@code 10 × maxEntries} accesses so popularity decays.
+ * Thread-safe.
+ */
+public class MaskResultCache {
+
+    /** SHA-256 digest of one cache key, held as four longs. */
+    static final class Key {
+        final long h0;
+        final long h1;
+        final long h2;
+        final long h3;
+
+        private Key(ByteBuffer digest) {
+            this.h0 = digest.getLong();
+            this.h1 = digest.getLong();
+            this.h2 = digest.getLong();
+            this.h3 = digest.getLong();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return h0 == k.h0 && h1 == k.h1 && h2 == k.h2 && h3 == k.h3;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (h0 ^ (h0 >>> 32));
+        }
+    }
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+
+    private final int windowCapacity;
+    private final int mainCapacity;
+    private final LinkedHashMap<Key, int[]> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Key, int[]> main = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Count-min sketch: SKETCH_DEPTH rows of saturating counters, indexed by the digest words
+    private final byte[] sketch;
+    private final int sketchMask;
+    private final int sampleSize;
+    private int samples;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public MaskResultCache(SecureLogXConfig config) {
+        this(config.getResultCacheMaxEntries());
+    }
+
+    public MaskResultCache(int maxEntries) {
+        maxEntries = Math.max(2, maxEntries);
+        this.windowCapacity = Math.max(1, maxEntries / 100);
+        this.mainCapacity = maxEntries - windowCapacity;
+        int width = Integer.highestOneBit(Math.max(16, maxEntries - 1) << 1);
+        this.sketch = new byte[SKETCH_DEPTH * width];
+        this.sketchMask = width - 1;
+        this.sampleSize = 10 * maxEntries;
+    }
+
+    /** Cache key of {@code message} as masked with {@code showLastFour}. */
+    static Key key(String message, boolean showLastFour) {
+        MessageDigest digest = DIGESTS.get();
+        digest.update(showLastFour ? (byte) 1 : (byte) 0);
+        return new Key(ByteBuffer.wrap(digest.digest(message.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /** Spans stored for {@code key}, or {@code null}; counts the access either way. */
+    synchronized int[] get(Key key) {
+        record(key);
+        int[] spans = window.get(key);
+        if (spans == null) {
+            spans = main.get(key);
+        }
+        if (spans != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return spans;
+    }
+
+    /** Counts another access to {@code key} without a lookup, e.g. an in-batch duplicate. */
+    synchronized void touch(Key key) {
+        record(key);
+    }
+
+    /** Stores the spans computed for {@code key}, subject to admission once the cache is full. */
+    synchronized void put(Key key, int[] spans) {
+        if (main.containsKey(key)) {
+            main.put(key, spans);
+            return;
+        }
+        window.put(key, spans);
+        if (window.size() <= windowCapacity) {
+            return;
+        }
+
+        Map.Entry<Key, int[]> candidate = window.entrySet().iterator().next();
+        window.remove(candidate.getKey());
+        if (main.size() < mainCapacity) {
+            main.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+        Key victim = main.keySet().iterator().next();
+        if (frequency(candidate.getKey()) > frequency(victim)) {
+            main.remove(victim);
+            main.put(candidate.getKey(), candidate.getValue());
+        } else {
+            rejected.incrementAndGet();
+        }
+    }
+
+    private void record(Key key) {
+        for (int d = 0; d < SKETCH_DEPTH; d++) {
+            int i = slot(key, d);
+            if (sketch[i] < MAX_COUNT) {
+                sketch[i]++;
+            }
+        }
+        if (++samples >= sampleSize) {
+            for (int i = 0; i < sketch.length; i++) {
+                sketch[i] >>= 1;
+            }
+            samples /= 2;
+        }
+    }
+
+    private int frequency(Key key) {
+        int min = MAX_COUNT;
+        for (int d = 0; d < SKETCH_DEPTH; d++) {
+            min = Math.min(min, sketch[slot(key, d)]);
+        }
+        return min;
+    }
+
+    /** Counter of {@code key} in sketch row {@code d}; each row is indexed by its own digest word. */
+    private int slot(Key key, int d) {
+        long word = d == 0 ? key.h0 : d == 1 ? key.h1 : d == 2 ? key.h2 : key.h3;
+        return d * (sketchMask + 1) + ((int) word & sketchMask);
+    }
+
+    public synchronized int size() {
+        return window.size() + main.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** Fraction of lookups answered from the cache (0 before the first lookup). */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    /** Entries turned away by the admission filter because the main region's victim was more popular. */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MaskResultCache{entries=%d, hits=%d, misses=%d, hitRate=%.3f, rejected=%d}",
+                size(), getHits(), getMisses(), getHitRate(), getRejected());
+    }
+}
@@ -4,124 +4,532 @@ import ai.onnxruntime.*;
 import com.securelogx.model.LogEvent;
 import com.securelogx.ner.TokenizerEngine;
 import com.securelogx.ner.TokenizedInput;
+import com.securelogx.util.LogLineEncoder;
 
+import java.nio.FloatBuffer;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.Arrays;
 
 
 public class ONNXDynamicInferenceEngine {
+    /** Model context limit; longer inputs are windowed (or truncated when windowing is off). */
+    public static final int MAX_SEQ_LEN = 512;
+
     private final OrtEnvironment env;
-    private final OrtSession session;
-    private final LabelAwareMaskingEngine maskingEngine = new LabelAwareMaskingEngine();
+    private final List<OrtSession> sessions = new ArrayList<>();
+    private final BlockingQueue<OrtSession> idleSessions;
+    private final LabelAwareMaskingEngine maskingEngine;
     private volatile boolean running = true;
+    private final boolean slidingWindow;
+    private final int windowOverlap;
+    private final int maxBatchRows;
+    private final TensorArena tensorArena;
+    private final CandidateWindows candidates;
+    private final AtomicLong messageTokens = new AtomicLong();
+    private final AtomicLong inferredTokens = new AtomicLong();
+    private final MaskResultCache resultCache;
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final StructuredMasker structured;
+    private volatile TokenizerEngine tokenizer;
+
+    // Per-thread encode buffers: runBatch may be called concurrently from application threads
+    private static final ThreadLocal<List<TokenizedInput>> ENCODE_BUFFERS = ThreadLocal.withInitial(ArrayList::new);
+    private static final ThreadLocal<LabelBuffers> LABEL_BUFFERS = ThreadLocal.withInitial(LabelBuffers::new);
+    // Row-label arrays: a job is inferred and decoded on different threads, so they are pooled, not per-thread
+    private final ConcurrentLinkedQueue<byte[]> rowLabelPool = new ConcurrentLinkedQueue<>();
 
     public ONNXDynamicInferenceEngine(String modelPath, com.securelogx.config.SecureLogXConfig config) throws Exception {
+        this(modelPath, config, 1);
+    }
+
+    /**
+     * @param workers number of batches that may run concurrently. Each gets its own {@code OrtSession}
+     *                (one copy of the model weights each) so workers never contend for a session's
+     *                thread pool; with CPU multithreading on, the cores are split evenly between them.
+     */
+    public ONNXDynamicInferenceEngine(String modelPath, com.securelogx.config.SecureLogXConfig config, int workers) throws Exception {
         this.env = OrtEnvironment.getEnvironment();
-        OrtSession.SessionOptions opts = new OrtSession.SessionOptions();
+        workers = Math.max(1, workers);
+        this.idleSessions = new ArrayBlockingQueue<>(workers);
 
-        if (config.isGpuInferenceEnabled() && OrtEnvironment.getAvailableProviders().contains("CUDAExecutionProvider")) {
+        boolean useGpu = config.isGpuInferenceEnabled() && OrtEnvironment.getAvailableProviders().contains("CUDAExecutionProvider");
+        int cores = Runtime.getRuntime().availableProcessors();
+        int threads = config.isCpuMultithreadingEnabled() ? Math.max(1, cores / workers) : 1;
+        if (useGpu) {
             System.out.println("[SecureLogX INIT] GPU Inference Mode Enabled (CUDA)");
-            opts.addCUDA();
         } else {
-            int threads = config.isCpuMultithreadingEnabled() ? Runtime.getRuntime().availableProcessors() : 1;
             System.out.println("[SecureLogX INIT] CPU Inference Mode Enabled");
-            System.out.println("[SecureLogX INIT] CPU Threads Used: " + threads);
-            opts.setIntraOpNumThreads(threads);
+            System.out.println("[SecureLogX INIT] Inference Workers: " + workers + ", CPU Threads per Worker: " + threads);
+        }
+
+        try {
+            for (int w = 0; w < workers; w++) {
+                try (OrtSession.SessionOptions opts = new OrtSession.SessionOptions()) {
+                    if (useGpu) {
+                        opts.addCUDA();
+                    } else {
+                        opts.setIntraOpNumThreads(threads);
+                        // One sequential graph per worker; parallelism comes from the workers themselves
+                        opts.setInterOpNumThreads(1);
+                        opts.setExecutionMode(OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL);
+                    }
+                    OrtSession session = env.createSession(modelPath.replace("\\", "/"), opts);
+                    sessions.add(session);
+                    idleSessions.add(session);
+                }
+            }
+        } catch (Exception e) {
+            closeSessions();
+            throw e;
         }
 
-        this.session = env.createSession(modelPath.replace("\\", "/"), opts);
+        this.slidingWindow = config.isSlidingWindowEnabled();
+        this.windowOverlap = config.getWindowOverlap();
+        this.maxBatchRows = Math.max(1, config.getMaxBatchRows());
+        this.tensorArena = new TensorArena(env, config.getBatchBuckets(), MAX_SEQ_LEN);
+        this.candidates = config.isCandidateWindowsEnabled()
+                ? new CandidateWindows(new PiiPrefilter(config), config.getCandidateRadius(), config.getCandidateMinTokens())
+                : null;
+        this.resultCache = config.isResultCacheEnabled() ? new MaskResultCache(config) : null;
+        this.structured = config.isStructuredEnabled() ? new StructuredMasker(config) : null;
+        this.maskingEngine = new LabelAwareMaskingEngine(
+                config.isDetectorFallbackEnabled() ? new PatternDetector(config) : null);
     }
 
-    public List<String> runBatch(TokenizerEngine tokenizer, List<LogEvent> batch) {
-        System.out.println("[DEBUG] Running ONNX batch inference for batch size: " + batch.size());
-        final int MAX_SEQ_LEN = 512;
-        List<String> output = new ArrayList<>();
+    /** Receives {@code (entityType, value)} for every entity the model masks. */
+    public void setEntityListener(java.util.function.BiConsumer<String, String> listener) {
+        maskingEngine.setEntityListener(listener);
+    }
+
+    /**
+     * Tokenizer for the free-text fields of JSON/XML messages on the pre-tokenized path
+     * ({@link #runEncoded} and the staged pipeline). Without one, those messages are inferred as
+     * flat text there; {@link #runBatch} uses its own tokenizer.
+     */
+    public void setTokenizer(TokenizerEngine tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+    /** Tokens of all messages tensorized so far. */
+    public long getMessageTokens() {
+        return messageTokens.get();
+    }
 
+    /** Tokens actually sent to the model so far (including window framing and overlaps). */
+    public long getInferredTokens() {
+        return inferredTokens.get();
+    }
+
+    /** Result cache for byte-identical messages, or {@code null} if disabled. */
+    public MaskResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /** Messages masked from an identical message earlier in the same batch. */
+    public long getDeduplicatedMessages() {
+        return deduplicated.get();
+    }
+
+    /** Number of batches this engine can infer concurrently (one per session). */
+    public int getWorkers() {
+        return sessions.size();
+    }
+
+    /**
+     * Tokenizes and masks one batch on the calling thread (via the tokenizer's own pool, if any).
+     * Only the distinct messages missing from the result cache are tokenized.
+     */
+    public List<String> runBatch(TokenizerEngine tokenizer, List<LogEvent> batch) {
+        InferenceJob job = new InferenceJob(batch, null, System.currentTimeMillis());
+        collapse(job);
+        List<TokenizedInput> encoded = encodeBuffers(job.modelEvents.size());
         try {
-            // 1) Tokenize each message
-            List<TokenizedInput> encoded = batch.stream()
-                    .map(e -> tokenizer.tokenize(e.getMessage()))
-                    .collect(Collectors.toList());
-
-            // 2) Determine seqLen ≤ MAX_SEQ_LEN
-            int rawMax = encoded.stream()
-                    .mapToInt(t -> t.getInputIds().length)
-                    .max().orElse(0);
-            int seqLen = Math.min(rawMax, MAX_SEQ_LEN);
-            int batchSize = encoded.size();
-
-            // 3) Allocate batch tensors
-            long[][] inputIds      = new long[batchSize][seqLen];
-            long[][] attentionMask = new long[batchSize][seqLen];
-            long[][] tokenTypeIds  = new long[batchSize][seqLen];
-
-            // 4) Copy with truncation
-            for (int i = 0; i < batchSize; i++) {
-                int[] ids  = encoded.get(i).getInputIds();
-                int[] mask = encoded.get(i).getAttentionMask();
-
-                for (int j = 0; j < Math.min(ids.length, seqLen); j++) {
-                    inputIds[i][j]      = ids[j];
-                    attentionMask[i][j] = mask[j];
-                    tokenTypeIds[i][j]  = 0;
+            tokenizer.tokenizeAll(messages(job.modelEvents), encoded);
+        } catch (Exception e) {
+            System.err.println("[ERROR] Tokenization failed for batch size: " + batch.size());
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+        job.modelEncoded = encoded;
+        return run(job);
+    }
+
+    /**
+     * Runs inference and masking for a batch that has already been tokenized, e.g. by
+     * {@link TokenizerEngine#tokenizeAllAsync} while the previous batch was in inference.
+     * All four stages run on the calling thread.
+     *
+     * @param encoded {@code encoded.get(i)} holds the tokens of {@code batch.get(i)}
+     */
+    public List<String> runEncoded(List<LogEvent> batch, List<TokenizedInput> encoded) {
+        return run(new InferenceJob(batch, encoded, System.currentTimeMillis()));
+    }
+
+    private List<String> run(InferenceJob job) {
+        tensorize(job);
+        infer(job);
+        decode(job);
+        format(job);
+        return job.getLines();
+    }
+
+    /**
+     * Splits JSON/XML messages into their free-text fields, collapses byte-identical texts of the
+     * job and looks the distinct ones up in the result cache; what is left ({@code job.modelEvents})
+     * is all the model has to see.
+     */
+    private void collapse(InferenceJob job) {
+        List<LogEvent> events = job.getEvents();
+        List<TokenizedInput> encoded = job.getEncoded();
+        int n = events.size();
+        // Fields of pre-tokenized messages need a tokenizer of their own
+        boolean splitStructured = structured != null && (encoded == null || tokenizer != null);
+        job.payloads = new StructuredPayload[n];
+        job.firstText = new int[n + 1];
+        List<LogEvent> texts = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            job.firstText[i] = texts.size();
+            LogEvent event = events.get(i);
+            StructuredPayload payload = splitStructured
+                    ? structured.prepare(event.getMessage(), event.shouldShowLastFour())
+                    : null;
+            job.payloads[i] = payload;
+            if (payload == null) {
+                texts.add(event);
+                continue;
+            }
+            for (int r = 0; r < payload.regionCount(); r++) {
+                texts.add(new LogEvent(payload.regionText(r), event.getLevel(), event.shouldShowLastFour(),
+                        event.getTraceId(), event.getSequenceNumber()));
+            }
+        }
+        job.firstText[n] = texts.size();
+
+        int t = texts.size();
+        job.keys = new MaskResultCache.Key[t];
+        job.spans = new int[t][];
+        job.modelIndex = new int[t];
+        job.modelEvents = new ArrayList<>(t);
+        job.modelKeys = new ArrayList<>(t);
+        job.modelEncoded = encoded != null ? new ArrayList<>(t) : null;
+        Map<MaskResultCache.Key, Integer> firstSeen = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            for (int x = job.firstText[i]; x < job.firstText[i + 1]; x++) {
+                LogEvent text = texts.get(x);
+                MaskResultCache.Key key = MaskResultCache.key(text.getMessage(), text.shouldShowLastFour());
+                job.keys[x] = key;
+                Integer first = firstSeen.putIfAbsent(key, x);
+                if (first != null) {
+                    job.spans[x] = job.spans[first];
+                    job.modelIndex[x] = job.modelIndex[first];
+                    deduplicated.incrementAndGet();
+                    if (resultCache != null) {
+                        resultCache.touch(key);
+                    }
+                    continue;
+                }
+                job.spans[x] = resultCache != null ? resultCache.get(key) : null;
+                if (job.spans[x] != null) {
+                    job.modelIndex[x] = -1;
+                    continue;
+                }
+                job.modelIndex[x] = job.modelEvents.size();
+                job.modelEvents.add(text);
+                job.modelKeys.add(key);
+                if (encoded != null) {
+                    job.modelEncoded.add(job.payloads[i] == null ? encoded.get(i) : null);
                 }
             }
+        }
+    }
 
-            // 5) Build ONNX inputs
-            Map<String, OnnxTensor> inputs = Map.of(
-                    "input_ids",      OnnxTensor.createTensor(env, inputIds),
-                    "attention_mask", OnnxTensor.createTensor(env, attentionMask),
-                    "token_type_ids", OnnxTensor.createTensor(env, tokenTypeIds)
-            );
-
-            // 6) Run the session
-            try (OrtSession.Result result = session.run(inputs)) {
-                float[][][] logits = (float[][][]) result.get(0).getValue();
-
-                // 7) Mask and format each message
-                for (int i = 0; i < batchSize; i++) {
-                    // Pull the original offsets list
-                    List<int[]> rawOffsets = encoded.get(i).getOffsets();
-                    // Truncate it locally to seqLen
-                    List<int[]> truncatedOffsets = rawOffsets.size() > seqLen
-                            ? rawOffsets.subList(0, seqLen)
-                            : rawOffsets;
-
-                    // Call your mask method
-                    String masked = maskingEngine.mask(
-                            batch.get(i).getMessage(),
-                            encoded.get(i).getInputIds(),
-                            new float[][][]{logits[i]},
-                            truncatedOffsets,
-                            batch.get(i).shouldShowLastFour()
-                    );
-
-                    String timestamp = java.time.LocalDateTime.now().toString();
-                    String formatted = String.format(
-                            "timestamp=%s level=%s traceId=%s seq=%d message=\"%s\"",
-                            timestamp,
-                            batch.get(i).getLevel().name(),
-                            batch.get(i).getTraceId(),
-                            batch.get(i).getSequenceNumber(),
-                            masked
-                    );
-                    output.add(formatted);
+    /** Tokenizes the structured-message fields that {@link #collapse} left without tokens. */
+    private void tokenizeFields(InferenceJob job) throws Exception {
+        if (job.modelEncoded == null) {
+            return;
+        }
+        List<String> texts = new ArrayList<>();
+        List<Integer> at = new ArrayList<>();
+        for (int m = 0; m < job.modelEncoded.size(); m++) {
+            if (job.modelEncoded.get(m) == null) {
+                texts.add(job.modelEvents.get(m).getMessage());
+                at.add(m);
+            }
+        }
+        if (texts.isEmpty()) {
+            return;
+        }
+        List<TokenizedInput> fields = new ArrayList<>(texts.size());
+        for (int k = 0; k < texts.size(); k++) {
+            fields.add(new TokenizedInput());
+        }
+        tokenizer.tokenizeAll(texts, fields);
+        for (int k = 0; k < at.size(); k++) {
+            job.modelEncoded.set(at.get(k), fields.get(k));
+        }
+    }
+
+    /**
+     * Stage 1: collapses duplicate and cached texts, then plans model rows for the rest (one
+     * per message, or overlapping windows for messages over MAX_SEQ_LEN) and writes them into
+     * pooled input tensors, {@code maxBatchRows} rows per tensor.
+     */
+    public void tensorize(InferenceJob job) {
+        try {
+            if (job.modelEvents == null) {
+                collapse(job);
+                tokenizeFields(job);
+            }
+            List<TokenizedInput> encoded = job.modelEncoded;
+            int count = job.modelEvents.size();
+            WindowPlan plan = WindowPlan.plan(encoded, job.modelEvents, count, slidingWindow, windowOverlap, candidates);
+            job.plan = plan;
+            long tokens = 0;
+            for (int i = 0; i < count; i++) {
+                tokens += encoded.get(i).length();
+            }
+            messageTokens.addAndGet(tokens);
+            inferredTokens.addAndGet(plan.labelSlots());
+            job.slots = new TensorArena.Slot[(plan.rows() + maxBatchRows - 1) / maxBatchRows];
+            for (int c = 0; c < job.slots.length; c++) {
+                int from = c * maxBatchRows;
+                job.slots[c] = fillRows(job, plan, encoded, from, Math.min(plan.rows(), from + maxBatchRows));
+            }
+        } catch (Exception e) {
+            fail(job, e);
+        }
+    }
+
+    /**
+     * Stage 2: runs every tensor of the job on one checked-out session, keeping only argmax labels
+     * in a pooled row-label array, and returns the tensors to the arena.
+     */
+    public void infer(InferenceJob job) {
+        if (job.failed) {
+            return;
+        }
+        try {
+            job.rowLabels = acquireRowLabels(job.plan.labelSlots());
+            if (job.plan.rows() == 0) {
+                return; // every message was cached or a duplicate
+            }
+            OrtSession session = idleSessions.take();
+            try {
+                for (int c = 0; c < job.slots.length; c++) {
+                    int from = c * maxBatchRows;
+                    inferRows(session, job.plan, job.slots[c], from, Math.min(job.plan.rows(), from + maxBatchRows), job.rowLabels);
                 }
+            } finally {
+                idleSessions.add(session);
+                releaseSlots(job);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("[ERROR] Interrupted waiting for an inference session, batch size: " + job.getEvents().size());
+            job.failed = true;
+            releaseSlots(job);
+            releaseRowLabels(job);
+        } catch (Exception e) {
+            fail(job, e);
+        }
+    }
+
+    /**
+     * Stage 3: merges windows back per model text into entity spans, caches them, and masks
+     * every event with the spans of its texts. Returns the row-label array to the pool.
+     */
+    public void decode(InferenceJob job) {
+        if (job.failed) {
+            return;
+        }
+        try {
+            int[][] modelSpans = new int[job.modelEvents.size()][];
+            for (int m = 0; m < modelSpans.length; m++) {
+                TokenizedInput enc = job.modelEncoded.get(m);
+                byte[] labels = LABEL_BUFFERS.get().message(enc.length());
+                int labelled = job.plan.merge(m, job.rowLabels, enc, labels);
+                modelSpans[m] = maskingEngine.spans(job.modelEvents.get(m).getMessage(), enc, labels, labelled);
             }
 
-            System.out.println("[DEBUG] Masked outputs generated: " + output.size());
-            if (!output.isEmpty()) {
-                System.out.println("[DEBUG] First masked output: " + output.get(0));
+            for (int m = 0; m < modelSpans.length; m++) {
+                if (resultCache != null) {
+                    resultCache.put(job.modelKeys.get(m), modelSpans[m]);
+                }
+            }
+            for (int x = 0; x < job.spans.length; x++) {
+                if (job.spans[x] == null) {
+                    job.spans[x] = modelSpans[job.modelIndex[x]];
+                }
             }
 
+            List<LogEvent> batch = job.getEvents();
+            for (int i = 0; i < batch.size(); i++) {
+                LogEvent event = batch.get(i);
+                StructuredPayload payload = job.payloads[i];
+                if (payload == null) {
+                    job.masked.add(maskingEngine.apply(event.getMessage(), job.spans[job.firstText[i]],
+                            event.shouldShowLastFour()));
+                    continue;
+                }
+                int[] spans = payload.messageSpans(
+                        Arrays.copyOfRange(job.spans, job.firstText[i], job.firstText[i + 1]));
+                job.masked.add(payload.finish(
+                        maskingEngine.apply(new String(payload.masked()), spans, event.shouldShowLastFour())));
+            }
         } catch (Exception e) {
-            System.err.println("[ERROR] Batch inference failed for batch size: " + batch.size());
-            e.printStackTrace();
+            fail(job, e);
+        } finally {
+            releaseRowLabels(job);
         }
+    }
 
-        return output;
+    /** Stage 4: renders each masked message as an output line. */
+    public void format(InferenceJob job) {
+        if (job.failed) {
+            return;
+        }
+        List<LogEvent> batch = job.getEvents();
+        for (int i = 0; i < batch.size(); i++) {
+            job.lines.add(LogLineEncoder.line(batch.get(i), job.masked.get(i)));
+        }
+    }
+
+    private void fail(InferenceJob job, Exception e) {
+        System.err.println("[ERROR] Batch inference failed for batch size: " + job.getEvents().size());
+        e.printStackTrace();
+        job.failed = true;
+        releaseSlots(job);
+        releaseRowLabels(job);
+    }
+
+    private void releaseSlots(InferenceJob job) {
+        if (job.slots == null) {
+            return;
+        }
+        for (TensorArena.Slot slot : job.slots) {
+            if (slot != null) {
+                tensorArena.release(slot);
+            }
+        }
+        job.slots = null;
+    }
+
+    /** A pooled row-label array of at least {@code size} entries; contents are stale. */
+    private byte[] acquireRowLabels(int size) {
+        byte[] labels = rowLabelPool.poll();
+        if (labels == null || labels.length < size) {
+            labels = new byte[Math.max(size, labels == null ? 0 : labels.length << 1)];
+        }
+        return labels;
+    }
+
+    private void releaseRowLabels(InferenceJob job) {
+        if (job.rowLabels != null) {
+            rowLabelPool.offer(job.rowLabels);
+            job.rowLabels = null;
+        }
+    }
+
+    /**
+     * Writes plan rows {@code [from, to)} into a pooled direct-buffer tensor slot whose length is the
+     * bucket fitting the longest row, and adds its real tokens and tensor slots to the job's counts.
+     */
+    private TensorArena.Slot fillRows(InferenceJob job, WindowPlan plan, List<TokenizedInput> encoded, int from, int to) throws OrtException {
+        int longest = 0;
+        for (int r = from; r < to; r++) {
+            longest = Math.max(longest, plan.rowLength(r));
+        }
+
+        TensorArena.Slot slot = tensorArena.acquire(to - from, longest);
+        int seqLen = slot.seqLen;
+        long real = 0;
+        for (int r = from; r < to; r++) {
+            int offset = (r - from) * seqLen;
+            int len = plan.fillRow(r, encoded.get(plan.message(r)), slot.inputIds, offset);
+            real += len;
+            for (int p = 0; p < seqLen; p++) {
+                if (p >= len) {
+                    slot.inputIds.put(offset + p, 0L);
+                }
+                slot.attentionMask.put(offset + p, p < len ? 1L : 0L);
+            }
+        }
+        job.realTokens += real;
+        job.paddedTokens += (long) slot.rows * seqLen;
+        return slot;
+    }
+
+    /**
+     * Runs the filled slot of plan rows {@code [from, to)} and stores each row token's predicted label
+     * at {@code rowLabels[plan.rowOffset(row) + p]}. The {@code [rows][seq][labels]} output is read as
+     * one flat {@code FloatBuffer} and reduced to labels in a single pass, so no per-token
+     * {@code float[]} arrays are created.
+     */
+    private void inferRows(OrtSession session, WindowPlan plan, TensorArena.Slot slot, int from, int to,
+                           byte[] rowLabels) throws OrtException {
+        try (OrtSession.Result result = session.run(slot.inputs)) {
+            OnnxTensor output = (OnnxTensor) result.get(0);
+            long[] shape = output.getInfo().getShape(); // [rows, seqLen, labels]
+            int outLen = (int) shape[1];
+            int numLabels = (int) shape[2];
+            FloatBuffer logits = output.getFloatBuffer();
+            for (int r = from; r < to; r++) {
+                int base = (r - from) * outLen * numLabels;
+                int dst = plan.rowOffset(r);
+                int len = plan.rowLength(r);
+                for (int p = 0; p < len; p++, base += numLabels) {
+                    rowLabels[dst + p] = (byte) argmax(logits, base, numLabels);
+                }
+            }
+        }
+    }
+
+    /** Index of the highest of the {@code count} scores starting at {@code base}. */
+    private static int argmax(FloatBuffer scores, int base, int count) {
+        int best = 0;
+        float bestScore = scores.get(base);
+        for (int k = 1; k < count; k++) {
+            float score = scores.get(base + k);
+            if (score > bestScore) {
+                bestScore = score;
+                best = k;
+            }
+        }
+        return best;
+    }
+
+    /** Message texts of {@code batch}, in order, as handed to the tokenizer. */
+    public static List<String> messages(List<LogEvent> batch) {
+        List<String> texts = new ArrayList<>(batch.size());
+        for (LogEvent e : batch) {
+            texts.add(e.getMessage());
+        }
+        return texts;
+    }
+
+    /** Per-thread merged-label array, grown on demand and reused across messages. */
+    private static final class LabelBuffers {
+        private byte[] message = new byte[MAX_SEQ_LEN];
+
+        byte[] message(int size) {
+            if (message.length < size) {
+                message = new byte[Math.max(size, message.length << 1)];
+            }
+            return message;
+        }
+    }
+
+    private static List<TokenizedInput> encodeBuffers(int size) {
+        List<TokenizedInput> buffers = ENCODE_BUFFERS.get();
+        while (buffers.size() < size) {
+            buffers.add(new TokenizedInput());
+        }
+        return buffers;
     }
 
     public void shutdown() {
@@ -131,6 +539,20 @@ public class ONNXDynamicInferenceEngine {
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
+        tensorArena.close();
+        closeSessions();
+    }
+
+    private void closeSessions() {
+        for (OrtSession session : sessions) {
+            try {
+                session.close();
+            } catch (OrtException e) {
+                System.err.println("[ERROR] Failed to close ONNX session");
+                e.printStackTrace();
+            }
+        }
+        sessions.clear();
     }
 
     public boolean isRunning() {
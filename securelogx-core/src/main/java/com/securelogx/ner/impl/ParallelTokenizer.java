@@ -3,16 +3,91 @@ package com.securelogx.ner.impl;
 import com.securelogx.ner.TokenizerEngine;
 import com.securelogx.ner.TokenizedInput;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Tokenizer that encodes whole batches across a dedicated fork-join pool.
+ * <p>
+ * {@link PureJavaTokenizer} is read-only after construction, so one instance is shared by all
+ * workers; each message is encoded into its own caller-supplied buffer. With one thread the
+ * pool is skipped and batches are encoded on the calling thread.
+ */
 public class ParallelTokenizer implements TokenizerEngine {
 
     private final PureJavaTokenizer tokenizer;
+    private final ForkJoinPool pool;
 
     public ParallelTokenizer(String tokenizerPath) throws Exception {
+        this(tokenizerPath, 1);
+    }
+
+    /**
+     * @param threads worker count for {@link #tokenizeAll}; typically {@code securelogx.maxCpuThreads}
+     */
+    public ParallelTokenizer(String tokenizerPath, int threads) throws Exception {
         this.tokenizer = new PureJavaTokenizer(tokenizerPath);
+        this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
     }
 
     @Override
     public TokenizedInput tokenize(String text) {
         return tokenizer.encode(text);
     }
+
+    @Override
+    public void tokenize(String text, TokenizedInput out) {
+        tokenizer.encode(text, out);
+    }
+
+    @Override
+    public void tokenizeAll(List<String> texts, List<TokenizedInput> out) {
+        if (pool == null || texts.size() < 2) {
+            TokenizerEngine.super.tokenizeAll(texts, out);
+            return;
+        }
+        pool.invoke(new EncodeTask(texts, out, 0, texts.size()));
+    }
+
+    @Override
+    public CompletableFuture<Void> tokenizeAllAsync(List<String> texts, List<TokenizedInput> out) {
+        if (pool == null) {
+            return TokenizerEngine.super.tokenizeAllAsync(texts, out);
+        }
+        return CompletableFuture.runAsync(() -> tokenizeAll(texts, out), pool);
+    }
+
+    /** Stops the worker pool; in-flight batches are allowed to finish. */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /** Splits the batch in halves down to single messages, so long and short messages balance out. */
+    private final class EncodeTask extends RecursiveAction {
+        private final List<String> texts;
+        private final List<TokenizedInput> out;
+        private final int from;
+        private final int to;
+
+        EncodeTask(List<String> texts, List<TokenizedInput> out, int from, int to) {
+            this.texts = texts;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                tokenizer.encode(texts.get(from), out.get(from));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new EncodeTask(texts, out, from, mid), new EncodeTask(texts, out, mid, to));
+        }
+    }
 }
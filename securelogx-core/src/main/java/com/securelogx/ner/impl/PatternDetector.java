@@ -0,0 +1,398 @@
+package com.securelogx.ner.impl;
+
+import com.securelogx.config.SecureLogXConfig;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Deterministic detector for structured PII, finding every supported format in one left-to-right
+ * pass instead of one regex pass per pattern:
+ * <ul>
+ *   <li>SSN {@code ddd-dd-dddd}</li>
+ *   <li>EMAIL {@code local@domain.tld}</li>
+ *   <li>PHONE {@code (ddd) ddd-dddd}, {@code ddd-ddd-dddd}, {@code ddd.ddd.dddd}, optional {@code +1}</li>
+ *   <li>CARD 13-19 digits, optionally grouped by single spaces or dashes, issuer prefix 2-6 and a valid Luhn check</li>
+ *   <li>NPI 10 digits starting with 1 or 2 whose Luhn check over the {@code 80840} prefix holds</li>
+ *   <li>IPV4 four dotted octets of at most 255</li>
+ * </ul>
+ * The scan is a small hand-compiled automaton: the class of the char at a word boundary selects the
+ * format parsers to try ({@code (}, {@code +} or a digit), each reading a bounded number of chars;
+ * runs that match nothing are skipped whole. An {@code @} looks back over the local part once and
+ * forward over the domain, replacing any digit match inside the address. Matches are reported in
+ * text order, never overlap, and must start and end on a word boundary.
+ * <p>
+ * Shared by the runtime fallback masking ({@link LabelAwareMaskingEngine}, all-level masking in
+ * SecureLogX and the masking consumer) and the compile-time literal check of the annotation
+ * processor. Immutable and thread-safe.
+ */
+public final class PatternDetector {
+
+    private static final int[] NO_SPANS = new int[0];
+    private static final ThreadLocal<int[][]> SCRATCH = ThreadLocal.withInitial(() -> new int[][]{new int[48]});
+
+    private final boolean[] enabled = new boolean[EntityType.values().length];
+
+    public PatternDetector(SecureLogXConfig config) {
+        this(parseTypes(config.getDetectorTypes()));
+    }
+
+    public PatternDetector(Set<EntityType> types) {
+        for (EntityType t : types) {
+            enabled[t.ordinal()] = true;
+        }
+    }
+
+    /** Detector for every supported format. */
+    public static PatternDetector all() {
+        return new PatternDetector(EnumSet.of(EntityType.SSN, EntityType.EMAIL, EntityType.PHONE,
+                EntityType.CARD, EntityType.NPI, EntityType.IPV4));
+    }
+
+    /** Parses a comma-separated list of {@link EntityType} names, e.g. {@code "SSN,EMAIL"}. */
+    public static Set<EntityType> parseTypes(String csv) {
+        Set<EntityType> types = EnumSet.noneOf(EntityType.class);
+        for (String raw : csv.split(",")) {
+            String name = raw.trim();
+            if (!name.isEmpty()) {
+                types.add(EntityType.valueOf(name.toUpperCase(Locale.ROOT)));
+            }
+        }
+        return types;
+    }
+
+    /** Matches in {@code text} as flat {@code {start, end, EntityType ordinal}} triples, in text order. */
+    public int[] find(CharSequence text) {
+        int[][] scratch = SCRATCH.get();
+        int n = scan(text, scratch);
+        return n == 0 ? NO_SPANS : Arrays.copyOf(scratch[0], n);
+    }
+
+    /** True if {@code text} contains any enabled format. */
+    public boolean containsAny(CharSequence text) {
+        return scan(text, SCRATCH.get()) > 0;
+    }
+
+    /**
+     * Masks every match like the model's spans; returns {@code text} itself, without copying, when
+     * nothing matches.
+     */
+    public String mask(String text, boolean showLastFour) {
+        int[][] scratch = SCRATCH.get();
+        int n = scan(text, scratch);
+        if (n == 0) {
+            return text;
+        }
+        int[] spans = scratch[0];
+        char[] chars = text.toCharArray();
+        for (int s = 0; s < n; s += 3) {
+            EntityType type = EntityType.of(spans[s + 2]);
+            LabelAwareMaskingEngine.maskRange(chars, spans[s], spans[s + 1], showLastFour && type.revealsLastFour());
+        }
+        return new String(chars);
+    }
+
+    /** Writes matches to {@code scratch[0]} (grown on demand); returns the number of ints written. */
+    private int scan(CharSequence text, int[][] scratch) {
+        int len = text.length();
+        int n = 0;
+        int i = 0;
+        while (i < len) {
+            char c = text.charAt(i);
+            if (c == '@') {
+                int localStart = localPartStart(text, i);
+                int end = localStart < i && enabled[EntityType.EMAIL.ordinal()] ? domainEnd(text, i + 1) : -1;
+                if (end < 0) {
+                    i++;
+                    continue;
+                }
+                // The address replaces any digit match inside its local part
+                while (n > 0 && scratch[0][n - 3] >= localStart) {
+                    n -= 3;
+                }
+                n = add(scratch, n, localStart, end, EntityType.EMAIL);
+                i = end;
+                continue;
+            }
+
+            if ((isDigit(c) || c == '(' || c == '+') && isNumberStart(text, i)) {
+                long match = matchNumeric(text, i);
+                if (match >= 0) {
+                    int end = (int) (match >>> 8);
+                    n = add(scratch, n, i, end, EntityType.of((int) (match & 0xff)));
+                    i = end;
+                    continue;
+                }
+            }
+
+            if (Character.isLetterOrDigit(c)) {
+                do {
+                    i++;
+                } while (i < len && Character.isLetterOrDigit(text.charAt(i)));
+            } else {
+                i++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * First enabled numeric format starting at {@code start}, packed as {@code end << 8 | ordinal};
+     * {@code -1} if none.
+     */
+    private long matchNumeric(CharSequence text, int start) {
+        int end;
+        if (enabled[EntityType.SSN.ordinal()] && (end = ssn(text, start)) > 0) {
+            return pack(end, EntityType.SSN);
+        }
+        if (enabled[EntityType.PHONE.ordinal()] && (end = phone(text, start)) > 0) {
+            return pack(end, EntityType.PHONE);
+        }
+        if (enabled[EntityType.IPV4.ordinal()] && (end = ipv4(text, start)) > 0) {
+            return pack(end, EntityType.IPV4);
+        }
+        if (enabled[EntityType.CARD.ordinal()] && (end = card(text, start)) > 0) {
+            return pack(end, EntityType.CARD);
+        }
+        if (enabled[EntityType.NPI.ordinal()] && (end = npi(text, start)) > 0) {
+            return pack(end, EntityType.NPI);
+        }
+        return -1;
+    }
+
+    private static long pack(int end, EntityType type) {
+        return ((long) end << 8) | type.ordinal();
+    }
+
+    /** {@code ddd-dd-dddd}; end index or -1. */
+    private static int ssn(CharSequence text, int i) {
+        int p = digits(text, i, 3);
+        p = p > 0 && at(text, p, '-') ? digits(text, p + 1, 2) : -1;
+        p = p > 0 && at(text, p, '-') ? digits(text, p + 1, 4) : -1;
+        return p > 0 && isBoundary(text, p) ? p : -1;
+    }
+
+    /** {@code [+1[ -.]](ddd)[ ]ddd[-. ]dddd} or {@code [+1[ -.]]ddd[-. ]ddd[-. ]dddd}; end index or -1. */
+    private static int phone(CharSequence text, int i) {
+        int p = i;
+        if (at(text, p, '+')) {
+            if (!at(text, p + 1, '1')) {
+                return -1;
+            }
+            p += 2;
+            if (isPhoneSeparator(text, p)) {
+                p++;
+            }
+        }
+        if (at(text, p, '(')) {
+            p = digits(text, p + 1, 3);
+            if (p < 0 || !at(text, p, ')')) {
+                return -1;
+            }
+            p++;
+            if (at(text, p, ' ')) {
+                p++;
+            }
+        } else {
+            p = digits(text, p, 3);
+            if (p < 0 || !isPhoneSeparator(text, p)) {
+                return -1;
+            }
+            p++;
+        }
+        p = digits(text, p, 3);
+        p = p > 0 && isPhoneSeparator(text, p) ? digits(text, p + 1, 4) : -1;
+        return p > 0 && isBoundary(text, p) ? p : -1;
+    }
+
+    /** Four dotted octets {@code 0-255}; end index or -1. */
+    private static int ipv4(CharSequence text, int i) {
+        int p = i;
+        for (int octet = 0; octet < 4; octet++) {
+            if (octet > 0) {
+                if (!at(text, p, '.')) {
+                    return -1;
+                }
+                p++;
+            }
+            int value = 0;
+            int start = p;
+            while (p < text.length() && p - start < 3 && isDigit(text.charAt(p))) {
+                value = value * 10 + (text.charAt(p) - '0');
+                p++;
+            }
+            if (p == start || value > 255) {
+                return -1;
+            }
+        }
+        // Not followed by another octet or more word chars (e.g. a version like 1.2.3.4.5)
+        boolean moreOctets = at(text, p, '.') && p + 1 < text.length() && isDigit(text.charAt(p + 1));
+        return !moreOctets && isBoundary(text, p) ? p : -1;
+    }
+
+    /**
+     * 13-19 digits, optionally split by one consistent single separator, issuer prefix 2-6,
+     * Luhn-valid; the longest such run of whole digit groups, so a trailing number is not swallowed.
+     */
+    private static int card(CharSequence text, int i) {
+        char first = text.charAt(i);
+        if (first < '2' || first > '6') {
+            return -1;
+        }
+        int p = i;
+        int count = 0;
+        int best = -1;
+        char separator = 0;
+        while (p < text.length() && count < 19) {
+            char c = text.charAt(p);
+            if (isDigit(c)) {
+                count++;
+                p++;
+                if (count >= 13 && isBoundary(text, p) && luhn(text, i, p, 0)) {
+                    best = p;
+                }
+            } else if ((c == ' ' || c == '-') && (separator == 0 || separator == c)
+                    && p + 1 < text.length() && isDigit(text.charAt(p + 1))) {
+                separator = c;
+                p++;
+            } else {
+                break;
+            }
+        }
+        return best;
+    }
+
+    /** Exactly 10 digits starting with 1 or 2, Luhn-valid with the {@code 80840} card-issuer prefix. */
+    private static int npi(CharSequence text, int i) {
+        int p = digits(text, i, 10);
+        if (p < 0 || !isBoundary(text, p)) {
+            return -1;
+        }
+        char first = text.charAt(i);
+        if (first != '1' && first != '2') {
+            return -1;
+        }
+        return luhn(text, i, p, 24) ? p : -1; // 24: Luhn contribution of the 80840 prefix
+    }
+
+    /** Luhn check over the digits of {@code text[from, to)}, skipping separators, plus {@code offset}. */
+    private static boolean luhn(CharSequence text, int from, int to, int offset) {
+        int sum = offset;
+        int k = 0;
+        for (int q = to - 1; q >= from; q--) {
+            char c = text.charAt(q);
+            if (isDigit(c)) {
+                sum += luhnDigit(c - '0', k++);
+            }
+        }
+        return sum % 10 == 0;
+    }
+
+    /** Luhn weight of {@code digit} at position {@code fromRight} (0 = check digit). */
+    private static int luhnDigit(int digit, int fromRight) {
+        if ((fromRight & 1) == 0) {
+            return digit;
+        }
+        int doubled = digit * 2;
+        return doubled > 9 ? doubled - 9 : doubled;
+    }
+
+    /** Start of the email local part ending just before {@code at}; {@code at} if there is none. */
+    private static int localPartStart(CharSequence text, int at) {
+        int s = at;
+        while (s > 0 && isLocalChar(text.charAt(s - 1))) {
+            s--;
+        }
+        // The address must begin with a letter or digit on a word boundary
+        while (s < at && !Character.isLetterOrDigit(text.charAt(s))) {
+            s++;
+        }
+        return s;
+    }
+
+    /**
+     * End of {@code label(.label)+} from {@code from} whose last label is 2+ letters; the longest
+     * such prefix, or -1.
+     */
+    private static int domainEnd(CharSequence text, int from) {
+        int p = from;
+        int end = -1;
+        int labels = 0;
+        while (true) {
+            int start = p;
+            boolean letters = true;
+            while (p < text.length() && isDomainChar(text.charAt(p))) {
+                letters &= Character.isLetter(text.charAt(p));
+                p++;
+            }
+            if (p == start) {
+                break;
+            }
+            labels++;
+            if (labels > 1 && letters && p - start >= 2 && isBoundary(text, p)) {
+                end = p;
+            }
+            if (!at(text, p, '.')) {
+                break;
+            }
+            p++;
+        }
+        return end;
+    }
+
+    /** End index after exactly {@code count} ASCII digits at {@code i}, or -1. */
+    private static int digits(CharSequence text, int i, int count) {
+        if (i < 0 || i + count > text.length()) {
+            return -1;
+        }
+        for (int k = i; k < i + count; k++) {
+            if (!isDigit(text.charAt(k))) {
+                return -1;
+            }
+        }
+        return i + count;
+    }
+
+    private static int add(int[][] scratch, int n, int start, int end, EntityType type) {
+        if (scratch[0].length < n + 3) {
+            scratch[0] = Arrays.copyOf(scratch[0], scratch[0].length << 1);
+        }
+        int[] spans = scratch[0];
+        spans[n] = start;
+        spans[n + 1] = end;
+        spans[n + 2] = type.ordinal();
+        return n + 3;
+    }
+
+    private static boolean at(CharSequence text, int i, char c) {
+        return i >= 0 && i < text.length() && text.charAt(i) == c;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isPhoneSeparator(CharSequence text, int i) {
+        return at(text, i, '-') || at(text, i, '.') || at(text, i, ' ');
+    }
+
+    private static boolean isLocalChar(char c) {
+        return (c < 128 && Character.isLetterOrDigit(c)) || c == '.' || c == '_' || c == '%' || c == '+' || c == '-';
+    }
+
+    private static boolean isDomainChar(char c) {
+        return (c < 128 && Character.isLetterOrDigit(c)) || c == '-';
+    }
+
+    /** Word boundary before {@code i} that is not inside a dotted number such as a version. */
+    private static boolean isNumberStart(CharSequence text, int i) {
+        return isBoundary(text, i - 1) && !(at(text, i - 1, '.') && i >= 2 && isDigit(text.charAt(i - 2)));
+    }
+
+    /** True if {@code i} is outside the text or not a letter or digit. */
+    private static boolean isBoundary(CharSequence text, int i) {
+        return i < 0 || i >= text.length() || !Character.isLetterOrDigit(text.charAt(i));
+    }
+}
@@ -0,0 +1,158 @@
+package com.securelogx.ner.impl;
+
+import com.securelogx.config.SecureLogXConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-pass pre-screen that lets SECURE messages which cannot contain PII skip NER.
+ * <p>
+ * Every entity the model knows needs a trigger: SSN, NPI and PHONE have digits, EMAIL has an
+ * {@code '@'}, and ADDRESS has a house number or a street word. A message is sent to the model
+ * if it contains any digit (Unicode {@link Character#isDigit}), any configured trigger char, or a
+ * configured keyword as a whole word (case-insensitive). Only messages with none of these bypass
+ * inference, so the gate can only ever skip work, never hide an entity the rules cover.
+ * <p>
+ * Rules come from {@code securelogx.prefilter.*}; the bypass rate is counted for monitoring.
+ * Disabled by default: the trigger rules follow the model's entity types, but their recall on real
+ * logs has not been measured yet. Thread-safe.
+ */
+public class PiiPrefilter {
+
+    /** Default keywords: street and unit words for addresses without a house number, spelled-out digits. */
+    public static final String DEFAULT_KEYWORDS =
+            "street,st,avenue,ave,road,rd,boulevard,blvd,lane,ln,drive,dr,court,ct,place,pl,"
+            + "terrace,way,highway,hwy,parkway,pkwy,circle,cir,suite,ste,apt,apartment,unit,box,"
+            + "zero,one,two,three,four,five,six,seven,eight,nine";
+
+    private final boolean enabled;
+    private final boolean digits;
+    private final char[] triggerChars;
+    private final String[][] keywordsByLength;
+
+    private final AtomicLong screened = new AtomicLong();
+    private final AtomicLong bypassed = new AtomicLong();
+
+    public PiiPrefilter(SecureLogXConfig config) {
+        this(config.isPrefilterEnabled(), config.isPrefilterDigits(), config.getPrefilterChars(), config.getPrefilterKeywords());
+    }
+
+    /**
+     * @param triggerChars any of these chars sends a message to the model
+     * @param keywords     comma-separated words that send a message to the model
+     */
+    public PiiPrefilter(boolean enabled, boolean digits, String triggerChars, String keywords) {
+        this.enabled = enabled;
+        this.digits = digits;
+        this.triggerChars = triggerChars.toCharArray();
+        Arrays.sort(this.triggerChars);
+
+        List<List<String>> byLength = new ArrayList<>();
+        for (String raw : keywords.split(",")) {
+            String kw = raw.trim().toLowerCase(Locale.ROOT);
+            if (kw.isEmpty()) {
+                continue;
+            }
+            while (byLength.size() <= kw.length()) {
+                byLength.add(new ArrayList<>());
+            }
+            byLength.get(kw.length()).add(kw);
+        }
+        this.keywordsByLength = new String[byLength.size()][];
+        for (int len = 0; len < byLength.size(); len++) {
+            keywordsByLength[len] = byLength.get(len).toArray(new String[0]);
+        }
+    }
+
+    /**
+     * Returns true if {@code text} may contain PII and must go through NER; false if it can be
+     * written as is. Counts the decision.
+     */
+    public boolean mayContainPii(String text) {
+        if (!enabled) {
+            return true;
+        }
+        screened.incrementAndGet();
+        if (nextTrigger(text, 0) >= 0) {
+            return true;
+        }
+        bypassed.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Index of the first trigger at or after {@code from}: a digit, a trigger char, or the start of
+     * a keyword. {@code -1} if there is none.
+     */
+    public int nextTrigger(CharSequence text, int from) {
+        int n = text.length();
+        int wordStart = -1;
+        for (int i = from; i <= n; i++) {
+            char c = i < n ? text.charAt(i) : ' ';
+            if ((digits && Character.isDigit(c)) || Arrays.binarySearch(triggerChars, c) >= 0) {
+                return wordStart >= 0 && isKeyword(text, wordStart, i) ? wordStart : i;
+            }
+            if (Character.isLetter(c)) {
+                if (wordStart < 0) {
+                    wordStart = i;
+                }
+            } else if (wordStart >= 0) {
+                if (isKeyword(text, wordStart, i)) {
+                    return wordStart;
+                }
+                wordStart = -1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isKeyword(CharSequence text, int start, int end) {
+        int len = end - start;
+        if (len >= keywordsByLength.length) {
+            return false;
+        }
+        for (String kw : keywordsByLength[len]) {
+            if (regionMatchesIgnoreCase(text, start, kw)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatchesIgnoreCase(CharSequence text, int start, String lowerKeyword) {
+        for (int k = 0; k < lowerKeyword.length(); k++) {
+            if (Character.toLowerCase(text.charAt(start + k)) != lowerKeyword.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getScreened() {
+        return screened.get();
+    }
+
+    public long getBypassed() {
+        return bypassed.get();
+    }
+
+    /** Fraction of screened messages that skipped NER (0 before the first one). */
+    public double getBypassRate() {
+        long total = screened.get();
+        return total == 0 ? 0.0 : (double) bypassed.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PiiPrefilter{screened=%d, bypassed=%d, bypassRate=%.3f}",
+                getScreened(), getBypassed(), getBypassRate());
+    }
+}
@@ -1,134 +1,99 @@
 package com.securelogx.ner.impl;
 
 import com.securelogx.ner.TokenizedInput;
-import org.json.JSONObject;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.*;
 
 /**
  * Pure Java Tokenizer compatible with BERT-base-cased WordPiece tokenizer.
  * Updated to include smarter pre-tokenization (punctuation-aware).
+ * The vocab is loaded from a precompiled {@link VocabSnapshot} when one matches the JSON.
  */
 public class PureJavaTokenizer {
 
-    private final Map<String, Integer> vocab;
+    private final WordPieceTrie trie;
     private final int clsTokenId;
     private final int sepTokenId;
     private final int unkTokenId;
     private final boolean doLowerCase = false; // because it's bert-base-cased
 
     public PureJavaTokenizer(String tokenizerJsonPath) throws IOException {
-        this.vocab = loadVocab(tokenizerJsonPath);
-        this.clsTokenId = vocab.getOrDefault("[CLS]", 101);
-        this.sepTokenId = vocab.getOrDefault("[SEP]", 102);
-        this.unkTokenId = vocab.getOrDefault("[UNK]", 100);
+        this.trie = VocabSnapshot.loadOrCompile(Path.of(tokenizerJsonPath));
+        this.clsTokenId = trie.get("[CLS]", 101);
+        this.sepTokenId = trie.get("[SEP]", 102);
+        this.unkTokenId = trie.get("[UNK]", 100);
     }
 
-    private Map<String, Integer> loadVocab(String tokenizerJsonPath) throws IOException {
-        String content = Files.readString(Path.of(tokenizerJsonPath));
-        JSONObject json = new JSONObject(content);
-        JSONObject vocabJson = json.getJSONObject("model").getJSONObject("vocab");
-
-        Map<String, Integer> vocab = new HashMap<>();
-        for (String key : vocabJson.keySet()) {
-            vocab.put(key, vocabJson.getInt(key));
-        }
-        return vocab;
+    public TokenizedInput encode(String text) {
+        TokenizedInput out = new TokenizedInput();
+        encode(text, out);
+        return out;
     }
 
-    public TokenizedInput encode(String text) {
+    /**
+     * Encodes {@code text} into the caller-supplied buffer, clearing it first.
+     * IDs and offsets are written as primitives, so a recycled buffer encodes without garbage.
+     */
+    public void encode(String text, TokenizedInput out) {
         if (doLowerCase) {
             text = text.toLowerCase();
         }
 
-        List<Integer> tokenIds = new ArrayList<>();
-        List<int[]> offsets = new ArrayList<>();
-
-        tokenIds.add(clsTokenId);
-        offsets.add(new int[]{-1, -1}); // [CLS]
-
-        List<String> words = preTokenize(text);
-
-        int cursor = 0;
-        for (String word : words) {
-            int start = text.indexOf(word, cursor);
-            int end = start + word.length();
-            cursor = end;
-
-            List<String> wordPieces = wordpieceTokenize(word);
-            for (String piece : wordPieces) {
-                int tokenId = vocab.getOrDefault(piece, unkTokenId);
-                tokenIds.add(tokenId);
-                if (start >= 0 && end > start) {
-                    offsets.add(new int[]{start, end});
-                } else {
-                    offsets.add(new int[]{-1, -1});
-                }
-            }
-        }
-
-        tokenIds.add(sepTokenId);
-        offsets.add(new int[]{-1, -1}); // [SEP]
-
-        int[] inputIds = tokenIds.stream().mapToInt(i -> i).toArray();
-        int[] attentionMask = new int[inputIds.length];
-        Arrays.fill(attentionMask, 1);
-
-        return new TokenizedInput(inputIds, attentionMask, offsets);
+        out.clear();
+        out.add(clsTokenId, -1, -1); // [CLS]
+        preTokenize(text, out);
+        out.add(sepTokenId, -1, -1); // [SEP]
     }
 
-    private List<String> preTokenize(String text) {
-        List<String> tokens = new ArrayList<>();
-        for (String token : text.split("\\s+")) {
-            StringBuilder current = new StringBuilder();
-            for (char c : token.toCharArray()) {
-                if (Character.isLetterOrDigit(c)) {
-                    current.append(c);
-                } else {
-                    if (current.length() > 0) {
-                        tokens.add(current.toString());
-                        current.setLength(0);
-                    }
-                    tokens.add(String.valueOf(c));
+    /**
+     * Single-pass, punctuation-aware pre-tokenization: splits on whitespace, keeps runs of
+     * letters/digits together and emits every other char as its own word. Each word span is
+     * handed straight to the WordPiece stage, so no word Strings are built and offsets are exact.
+     */
+    private void preTokenize(String text, TokenizedInput out) {
+        int wordStart = -1;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (wordStart < 0) {
+                    wordStart = i;
                 }
+                continue;
             }
-            if (current.length() > 0) {
-                tokens.add(current.toString());
+            if (wordStart >= 0) {
+                wordpieceTokenize(text, wordStart, i, out);
+                wordStart = -1;
             }
+            if (!isWhitespace(c)) {
+                wordpieceTokenize(text, i, i + 1, out);
+            }
+        }
+        if (wordStart >= 0) {
+            wordpieceTokenize(text, wordStart, text.length(), out);
         }
-        return tokens;
     }
 
-    private List<String> wordpieceTokenize(String word) {
-        List<String> tokens = new ArrayList<>();
-        int start = 0;
-        while (start < word.length()) {
-            int end = word.length();
-            String sub = null;
-
-            while (start < end) {
-                String candidate = word.substring(start, end);
-                if (start > 0) {
-                    candidate = "##" + candidate;
-                }
-                if (vocab.containsKey(candidate)) {
-                    sub = candidate;
-                    break;
-                }
-                end--;
-            }
+    /** Same char class as the regex {@code \s}, which the pre-tokenizer historically split on. */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
 
-            if (sub == null) {
-                tokens.add("[UNK]");
+    /**
+     * Greedy longest-match-first WordPiece split of the word {@code text[start, end)}, appending each
+     * piece to {@code out} with the word's char span. Each step is one forward walk of the vocab trie,
+     * so no candidate substrings are built.
+     */
+    private void wordpieceTokenize(String text, int start, int end, TokenizedInput out) {
+        int pos = start;
+        while (pos < end) {
+            long match = trie.longestMatch(text, pos, end, pos > start);
+            if (match == WordPieceTrie.NO_MATCH) {
+                out.add(unkTokenId, start, end);
                 break;
             }
-
-            tokens.add(sub);
-            start = end;
+            out.add(WordPieceTrie.tokenId(match), start, end);
+            pos = WordPieceTrie.matchEnd(match);
         }
-        return tokens;
     }
 }
@@ -0,0 +1,370 @@
+package com.securelogx.ner.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.securelogx.config.SecureLogXConfig;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Structure-aware masking for SECURE messages that are JSON or XML documents.
+ * <p>
+ * The payload is walked with a streaming parser (Jackson streaming for JSON, StAX for XML) instead
+ * of being tokenized as flat text. Values whose field name, or the name of any enclosing object,
+ * array or element, matches a rule in {@code securelogx.structured.maskFields} are masked right
+ * away without inference. Every other string or number value becomes a free-text region of the
+ * {@link StructuredPayload}, inferred as a separate short row, batched with the fields of all
+ * messages in the job. Values are not pre-filtered one by one: the message as a whole has already
+ * passed the {@link PiiPrefilter} gate, and a value such as a street name without its house number
+ * in {@code homeAddress} or {@code billing_address} has no trigger of its own.
+ * <p>
+ * Rules are {@code name} or {@code name:TYPE}, matched case-insensitively ignoring {@code _},
+ * {@code -} and {@code .}, so {@code cardNumber} also covers {@code card_number}; the
+ * {@link EntityType} decides whether last-four applies. XML attributes are matched by their own
+ * name or their element's.
+ * <p>
+ * JSON token offsets come from the parser. The JDK's StAX locations point past its lookahead rather
+ * than at event boundaries, so XML events are mapped back to the raw text by a cursor that follows
+ * them through the markup. DTDs and external entities are disabled. A message that is not
+ * well-formed returns {@code null} and is masked as flat text. Thread-safe.
+ */
+public class StructuredMasker {
+
+    private static final String CDATA_OPEN = "<![CDATA[";
+
+    /** A field-name rule; {@code type} may be null (mask without last-four). */
+    private static final class Rule {
+        final EntityType type;
+
+        Rule(EntityType type) {
+            this.type = type;
+        }
+    }
+
+    private final Map<String, Rule> rules = new HashMap<>();
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final ThreadLocal<XMLInputFactory> xmlFactories = ThreadLocal.withInitial(() -> {
+        XMLInputFactory f = XMLInputFactory.newInstance();
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        f.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return f;
+    });
+
+    public StructuredMasker(SecureLogXConfig config) {
+        this(config.getStructuredMaskFields());
+    }
+
+    /**
+     * @param maskFields comma-separated {@code name[:TYPE]} rules
+     */
+    public StructuredMasker(String maskFields) {
+        for (String raw : maskFields.split(",")) {
+            String rule = raw.trim();
+            if (rule.isEmpty()) {
+                continue;
+            }
+            int colon = rule.indexOf(':');
+            EntityType type = colon < 0 ? null : EntityType.valueOf(rule.substring(colon + 1).trim().toUpperCase(Locale.ROOT));
+            rules.put(normalize(colon < 0 ? rule : rule.substring(0, colon)), new Rule(type));
+        }
+    }
+
+    /**
+     * Parses {@code message} if it is a JSON or XML document and masks its rule fields.
+     *
+     * @return the prepared payload, or {@code null} if the message is not structured or not well-formed
+     */
+    StructuredPayload prepare(String message, boolean showLastFour) {
+        int first = 0;
+        while (first < message.length() && Character.isWhitespace(message.charAt(first))) {
+            first++;
+        }
+        if (first == message.length()) {
+            return null;
+        }
+        char c = message.charAt(first);
+        try {
+            if (c == '{' || c == '[') {
+                return prepareJson(message, showLastFour);
+            }
+            if (c == '<') {
+                return prepareXml(message, showLastFour);
+            }
+        } catch (Exception e) {
+            // Not well-formed: masked as flat text
+        }
+        return null;
+    }
+
+    private StructuredPayload prepareJson(String message, boolean showLastFour) throws Exception {
+        StructuredPayload payload = new StructuredPayload(message);
+        Rule[] stack = new Rule[16];
+        int depth = 0;
+        try (JsonParser parser = jsonFactory.createParser(message)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                Rule inherited = depth > 0 ? stack[depth - 1] : null;
+                switch (token) {
+                    case START_OBJECT:
+                    case START_ARRAY:
+                        if (depth == stack.length) {
+                            stack = java.util.Arrays.copyOf(stack, depth << 1);
+                        }
+                        stack[depth++] = ruleFor(parser.currentName(), inherited);
+                        break;
+                    case END_OBJECT:
+                    case END_ARRAY:
+                        depth--;
+                        break;
+                    case VALUE_STRING: {
+                        int quote = (int) parser.getTokenLocation().getCharOffset();
+                        int end = closingQuote(message, quote);
+                        value(payload, quote + 1, end, ruleFor(parser.currentName(), inherited), showLastFour, true);
+                        break;
+                    }
+                    case VALUE_NUMBER_INT:
+                    case VALUE_NUMBER_FLOAT: {
+                        int start = (int) parser.getTokenLocation().getCharOffset();
+                        value(payload, start, start + parser.getText().length(),
+                                ruleFor(parser.currentName(), inherited), showLastFour, true);
+                        break;
+                    }
+                    default:
+                        break;
+                }
+            }
+        }
+        return payload;
+    }
+
+    private StructuredPayload prepareXml(String message, boolean showLastFour) throws Exception {
+        StructuredPayload payload = new StructuredPayload(message);
+        Rule[] stack = new Rule[16];
+        int depth = 0;
+        int cursor = 0;
+        boolean selfClosed = false;
+        XMLStreamReader reader = xmlFactories.get().createXMLStreamReader(new StringReader(message));
+        try {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT: {
+                        Rule rule = ruleFor(reader.getLocalName(), depth > 0 ? stack[depth - 1] : null);
+                        if (depth == stack.length) {
+                            stack = java.util.Arrays.copyOf(stack, depth << 1);
+                        }
+                        stack[depth++] = rule;
+                        int open = startTag(message, cursor);
+                        int close = tagEnd(message, open);
+                        attributes(payload, open, close, rule, showLastFour);
+                        selfClosed = message.charAt(close - 1) == '/';
+                        cursor = close + 1;
+                        break;
+                    }
+                    case XMLStreamConstants.END_ELEMENT:
+                        depth--;
+                        if (selfClosed) {
+                            selfClosed = false;
+                        } else {
+                            cursor = message.indexOf('>', message.indexOf("</", cursor)) + 1;
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        selfClosed = false;
+                        cursor = text(payload, cursor, depth > 0 ? stack[depth - 1] : null, showLastFour);
+                        break;
+                    case XMLStreamConstants.COMMENT:
+                        cursor = message.indexOf("-->", message.indexOf("<!--", cursor)) + 3;
+                        break;
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        cursor = message.indexOf("?>", message.indexOf("<?", cursor)) + 2;
+                        break;
+                    case XMLStreamConstants.DTD:
+                        cursor = message.indexOf('>', message.indexOf("<!", cursor)) + 1;
+                        break;
+                    default:
+                        break;
+                }
+                if (cursor <= 0) {
+                    throw new IllegalStateException("XML events out of step with the raw text");
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return payload;
+    }
+
+    /**
+     * Consumes the character data at {@code cursor}: text runs and CDATA sections up to the next
+     * other markup. StAX may split one run into several events; later ones find nothing left.
+     */
+    private int text(StructuredPayload payload, int cursor, Rule rule, boolean showLastFour) {
+        String s = payload.source();
+        while (cursor < s.length()) {
+            if (s.startsWith(CDATA_OPEN, cursor)) {
+                int start = cursor + CDATA_OPEN.length();
+                int end = s.indexOf("]]>", start);
+                value(payload, start, end, rule, showLastFour, false);
+                cursor = end + 3;
+            } else if (s.charAt(cursor) == '<') {
+                break;
+            } else {
+                int end = s.indexOf('<', cursor);
+                end = end < 0 ? s.length() : end;
+                value(payload, cursor, end, rule, showLastFour, false);
+                cursor = end;
+            }
+        }
+        return cursor;
+    }
+
+    /** Handles the quoted attribute values of the start tag {@code s[open, close]}. */
+    private void attributes(StructuredPayload payload, int open, int close, Rule elementRule, boolean showLastFour) {
+        String s = payload.source();
+        int p = open + 1;
+        while (p < close && isNameChar(s.charAt(p))) {
+            p++; // element name
+        }
+        while (p < close) {
+            char c = s.charAt(p);
+            if (Character.isWhitespace(c) || c == '/') {
+                p++;
+                continue;
+            }
+            int nameStart = p;
+            while (p < close && s.charAt(p) != '=' && !Character.isWhitespace(s.charAt(p))) {
+                p++;
+            }
+            String name = s.substring(nameStart, p);
+            while (p < close && s.charAt(p) != '"' && s.charAt(p) != '\'') {
+                p++;
+            }
+            if (p >= close) {
+                break;
+            }
+            int end = s.indexOf(s.charAt(p), p + 1);
+            int colon = name.indexOf(':');
+            value(payload, p + 1, end, ruleFor(colon < 0 ? name : name.substring(colon + 1), elementRule),
+                    showLastFour, false);
+            p = end + 1;
+        }
+    }
+
+    /**
+     * Masks the raw value {@code [start, end)} if a rule covers it, otherwise records it as a
+     * free-text region; escapes inside it are recorded either way.
+     */
+    private void value(StructuredPayload payload, int start, int end, Rule rule, boolean showLastFour, boolean json) {
+        String s = payload.source();
+        int first = start;
+        int last = end;
+        while (first < last && Character.isWhitespace(s.charAt(first))) {
+            first++;
+        }
+        while (last > first && Character.isWhitespace(s.charAt(last - 1))) {
+            last--;
+        }
+        if (first == last) {
+            return;
+        }
+        for (int p = first; p < last; p++) {
+            char c = s.charAt(p);
+            if (json && c == '\\' && p + 1 < last) {
+                int len = s.charAt(p + 1) == 'u' ? 6 : 2;
+                payload.addEscape(p, Math.min(last, p + len));
+                p += len - 1;
+            } else if (!json && c == '&') {
+                int semi = s.indexOf(';', p);
+                if (semi > 0 && semi < last) {
+                    payload.addEscape(p, semi + 1);
+                    p = semi;
+                }
+            }
+        }
+
+        if (rule != null) {
+            LabelAwareMaskingEngine.maskRange(payload.masked(), first, last,
+                    showLastFour && rule.type != null && rule.type.revealsLastFour());
+        } else {
+            payload.addRegion(first, last);
+        }
+    }
+
+    private Rule ruleFor(String name, Rule inherited) {
+        if (inherited != null || name == null) {
+            return inherited;
+        }
+        return rules.get(normalize(name));
+    }
+
+    private static String normalize(String name) {
+        StringBuilder key = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c != '_' && c != '-' && c != '.') {
+                key.append(Character.toLowerCase(c));
+            }
+        }
+        return key.toString();
+    }
+
+    /** Index of the quote closing the JSON string opened at {@code quote}. */
+    private static int closingQuote(String s, int quote) {
+        for (int p = quote + 1; p < s.length(); p++) {
+            char c = s.charAt(p);
+            if (c == '\\') {
+                p++;
+            } else if (c == '"') {
+                return p;
+            }
+        }
+        throw new IllegalStateException("Unterminated JSON string at " + quote);
+    }
+
+    /** Next {@code <name} at or after {@code from}. */
+    private static int startTag(String s, int from) {
+        for (int p = s.indexOf('<', from); p >= 0; p = s.indexOf('<', p + 1)) {
+            if (p + 1 < s.length() && isNameStart(s.charAt(p + 1))) {
+                return p;
+            }
+        }
+        throw new IllegalStateException("No start tag after " + from);
+    }
+
+    /** Index of the {@code >} ending the tag opened at {@code open}, skipping quoted values. */
+    private static int tagEnd(String s, int open) {
+        char quote = 0;
+        for (int p = open + 1; p < s.length(); p++) {
+            char c = s.charAt(p);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return p;
+            }
+        }
+        throw new IllegalStateException("Unterminated tag at " + open);
+    }
+
+    private static boolean isNameStart(char c) {
+        return Character.isLetter(c) || c == '_' || c == ':';
+    }
+
+    private static boolean isNameChar(char c) {
+        return isNameStart(c) || Character.isDigit(c) || c == '-' || c == '.';
+    }
+}
@@ -0,0 +1,118 @@
+package com.securelogx.ner.impl;
+
+import java.util.Arrays;
+
+/**
+ * One JSON or XML SECURE message as prepared by {@link StructuredMasker}: a copy of the raw text
+ * in which rule-matched fields are already masked, plus the raw char ranges of the remaining
+ * free-text values, which still need the model.
+ * <p>
+ * All offsets index the raw message, and masking never changes its length, so model spans found
+ * in a free-text region only need the region start added. JSON escapes and XML entity references
+ * are recorded so {@link #finish} can repair any that a mask ran through: a JSON unicode escape
+ * becomes the escaped bullet {@code •}, other escapes are restored as they were (they only ever
+ * hide punctuation or a single char).
+ */
+final class StructuredPayload {
+
+    private final String source;
+    private final char[] masked;
+    private int[] regions = new int[16]; // {start, end} of free-text values
+    private int regionInts;
+    private int[] escapes = new int[8];  // {start, end} of escape sequences and entity references
+    private int escapeInts;
+
+    StructuredPayload(String source) {
+        this.source = source;
+        this.masked = source.toCharArray();
+    }
+
+    String source() {
+        return source;
+    }
+
+    /** Raw text with the field-rule masks applied. */
+    char[] masked() {
+        return masked;
+    }
+
+    int regionCount() {
+        return regionInts >> 1;
+    }
+
+    int regionStart(int r) {
+        return regions[r * 2];
+    }
+
+    int regionEnd(int r) {
+        return regions[r * 2 + 1];
+    }
+
+    /** Raw text of free-text region {@code r}, as sent to the model. */
+    String regionText(int r) {
+        return source.substring(regionStart(r), regionEnd(r));
+    }
+
+    void addRegion(int start, int end) {
+        if (regionInts + 2 > regions.length) {
+            regions = Arrays.copyOf(regions, regions.length << 1);
+        }
+        regions[regionInts++] = start;
+        regions[regionInts++] = end;
+    }
+
+    void addEscape(int start, int end) {
+        if (escapeInts + 2 > escapes.length) {
+            escapes = Arrays.copyOf(escapes, escapes.length << 1);
+        }
+        escapes[escapeInts++] = start;
+        escapes[escapeInts++] = end;
+    }
+
+    /**
+     * Concatenates per-region model spans ({@code {start, end, type}} triples relative to each
+     * region, {@code null} for none) into message-level spans in text order.
+     */
+    int[] messageSpans(int[][] regionSpans) {
+        int total = 0;
+        for (int[] s : regionSpans) {
+            total += s == null ? 0 : s.length;
+        }
+        int[] spans = new int[total];
+        int n = 0;
+        for (int r = 0; r < regionSpans.length; r++) {
+            int[] s = regionSpans[r];
+            if (s == null) {
+                continue;
+            }
+            int offset = regionStart(r);
+            for (int k = 0; k < s.length; k += 3) {
+                spans[n++] = s[k] + offset;
+                spans[n++] = s[k + 1] + offset;
+                spans[n++] = s[k + 2];
+            }
+        }
+        return spans;
+    }
+
+    /** Repairs escapes that a mask ran through in the fully masked text. */
+    String finish(String maskedText) {
+        char[] out = null;
+        for (int e = 0; e < escapeInts; e += 2) {
+            int start = escapes[e];
+            int end = escapes[e + 1];
+            if (maskedText.regionMatches(start, source, start, end - start)) {
+                continue;
+            }
+            if (out == null) {
+                out = maskedText.toCharArray();
+            }
+            if (end - start == 6 && source.charAt(start) == '\\' && source.charAt(start + 1) == 'u') {
+                "\\u2022".getChars(0, 6, out, start);
+            } else {
+                source.getChars(start, end, out, start);
+            }
+        }
+        return out == null ? maskedText : new String(out);
+    }
+}
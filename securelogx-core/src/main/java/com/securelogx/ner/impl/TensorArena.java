@@ -0,0 +1,141 @@
+package com.securelogx.ner.impl;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Pool of reusable ONNX input tensors, keyed by (rows, bucketed seqLen).
+ * <p>
+ * Each {@link Slot} owns three direct, native-order {@code LongBuffer}s and the {@link OnnxTensor}s
+ * created over them. ONNX Runtime reads a direct buffer in place, so refilling the buffers is
+ * enough to feed the next batch: no {@code long[][]} staging arrays and no per-call tensor copy.
+ * Sequence lengths are rounded up to the configured length buckets so a handful of shapes cover
+ * all traffic. Slots are checked out per call, so concurrent callers never share one.
+ * <p>
+ * {@link #close()} releases every tensor the arena ever created.
+ */
+final class TensorArena implements AutoCloseable {
+
+    /** One checked-out set of input tensors of shape {@code [rows, seqLen]}. */
+    static final class Slot {
+        final int rows;
+        final int seqLen;
+        final LongBuffer inputIds;
+        final LongBuffer attentionMask;
+        final LongBuffer tokenTypeIds;
+        final Map<String, OnnxTensor> inputs;
+
+        private Slot(OrtEnvironment env, int rows, int seqLen) throws OrtException {
+            this.rows = rows;
+            this.seqLen = seqLen;
+            this.inputIds = directLongs(rows * seqLen);
+            this.attentionMask = directLongs(rows * seqLen);
+            this.tokenTypeIds = directLongs(rows * seqLen); // stays all zeros
+            long[] shape = {rows, seqLen};
+            OnnxTensor ids = OnnxTensor.createTensor(env, inputIds, shape);
+            OnnxTensor mask = null;
+            try {
+                mask = OnnxTensor.createTensor(env, attentionMask, shape);
+                OnnxTensor types = OnnxTensor.createTensor(env, tokenTypeIds, shape);
+                this.inputs = Map.of("input_ids", ids, "attention_mask", mask, "token_type_ids", types);
+            } catch (OrtException | RuntimeException e) {
+                ids.close();
+                if (mask != null) mask.close();
+                throw e;
+            }
+        }
+
+        private void close() {
+            inputs.values().forEach(OnnxTensor::close);
+        }
+
+        private static LongBuffer directLongs(int count) {
+            return ByteBuffer.allocateDirect(count * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+    }
+
+    private final OrtEnvironment env;
+    private final int[] lengthBuckets;
+    private final ConcurrentHashMap<Long, ConcurrentLinkedQueue<Slot>> free = new ConcurrentHashMap<>();
+    private final Set<Slot> created = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    /**
+     * @param lengthBuckets sequence-length bounds to round up to; {@code maxSeqLen} is always the last one
+     */
+    TensorArena(OrtEnvironment env, int[] lengthBuckets, int maxSeqLen) {
+        this.env = env;
+        this.lengthBuckets = IntStream.concat(
+                        Arrays.stream(lengthBuckets).filter(b -> b > 0 && b < maxSeqLen),
+                        IntStream.of(maxSeqLen))
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    /** Smallest length bucket that fits {@code seqLen}. */
+    int bucketLength(int seqLen) {
+        for (int b : lengthBuckets) {
+            if (b >= seqLen) {
+                return b;
+            }
+        }
+        return lengthBuckets[lengthBuckets.length - 1];
+    }
+
+    /** Checks out a slot of exactly {@code rows x bucketLength(seqLen)}; contents are stale until refilled. */
+    Slot acquire(int rows, int seqLen) throws OrtException {
+        if (closed) {
+            throw new IllegalStateException("TensorArena is closed");
+        }
+        int len = bucketLength(seqLen);
+        ConcurrentLinkedQueue<Slot> q = free.get(key(rows, len));
+        Slot slot = q != null ? q.poll() : null;
+        if (slot == null) {
+            slot = new Slot(env, rows, len);
+            created.add(slot);
+        }
+        return slot;
+    }
+
+    /** Returns a slot for reuse by the next batch of the same shape. */
+    void release(Slot slot) {
+        if (closed) {
+            if (created.remove(slot)) {
+                slot.close();
+            }
+            return;
+        }
+        free.computeIfAbsent(key(slot.rows, slot.seqLen), k -> new ConcurrentLinkedQueue<>()).offer(slot);
+    }
+
+    /**
+     * Closes every tensor created by this arena, including slots still checked out, so it must only be
+     * called once no inference is running. Slots released afterwards are closed on release.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Slot slot : created) {
+            if (created.remove(slot)) {
+                slot.close();
+            }
+        }
+        free.clear();
+    }
+
+    private static long key(int rows, int seqLen) {
+        return ((long) rows << 32) | seqLen;
+    }
+}
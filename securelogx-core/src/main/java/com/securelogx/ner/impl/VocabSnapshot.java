@@ -0,0 +1,155 @@
+package com.securelogx.ner.impl;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Precompiled binary snapshot of the WordPiece vocab trie.
+ * <p>
+ * Parsing the ~670 KB {@code tokenizer.json} with org.json dominates tokenizer startup, so the
+ * compiled {@link WordPieceTrie} is cached next to it as {@code <tokenizer.json>.vocab.bin}.
+ * The snapshot is memory-mapped on startup and used only if it matches the current JSON
+ * (same length and CRC32C); otherwise the JSON is parsed and the snapshot rewritten.
+ * <p>
+ * Layout (big-endian): magic, version, source length, source CRC32C, payload CRC32C, trie payload.
+ * <p>
+ * Can also be run as a build step: {@code java com.securelogx.ner.impl.VocabSnapshot <tokenizer.json>}.
+ */
+public final class VocabSnapshot {
+
+    private static final int MAGIC = 0x534C5856; // "SLXV"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8;
+    private static final String SUFFIX = ".vocab.bin";
+
+    private VocabSnapshot() {}
+
+    /**
+     * Returns the vocab trie for {@code tokenizerJson}, from its snapshot when fresh,
+     * otherwise by parsing the JSON and (best effort) refreshing the snapshot.
+     */
+    static WordPieceTrie loadOrCompile(Path tokenizerJson) throws IOException {
+        Path snapshot = snapshotPath(tokenizerJson);
+        long sourceLength = Files.size(tokenizerJson);
+        long sourceChecksum = checksum(tokenizerJson);
+
+        WordPieceTrie trie = tryLoad(snapshot, sourceLength, sourceChecksum);
+        if (trie != null) {
+            return trie;
+        }
+
+        trie = new WordPieceTrie(parseJsonVocab(tokenizerJson));
+        try {
+            write(snapshot, trie, sourceLength, sourceChecksum);
+            System.out.println("[SecureLogX INIT] Vocab snapshot written: " + snapshot);
+        } catch (IOException e) {
+            // Read-only model directory etc. – keep running from the parsed JSON
+            System.err.println("[SecureLogX INIT] Could not write vocab snapshot " + snapshot + ": " + e.getMessage());
+        }
+        return trie;
+    }
+
+    static Path snapshotPath(Path tokenizerJson) {
+        return tokenizerJson.resolveSibling(tokenizerJson.getFileName() + SUFFIX);
+    }
+
+    static Map<String, Integer> parseJsonVocab(Path tokenizerJson) throws IOException {
+        String content = Files.readString(tokenizerJson, StandardCharsets.UTF_8);
+        JSONObject json = new JSONObject(content);
+        JSONObject vocabJson = json.getJSONObject("model").getJSONObject("vocab");
+
+        Map<String, Integer> vocab = new HashMap<>();
+        for (String key : vocabJson.keySet()) {
+            vocab.put(key, vocabJson.getInt(key));
+        }
+        return vocab;
+    }
+
+    private static WordPieceTrie tryLoad(Path snapshot, long sourceLength, long sourceChecksum) {
+        if (!Files.isRegularFile(snapshot)) {
+            return null;
+        }
+        try (FileChannel ch = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.remaining() < HEADER_BYTES
+                    || buf.getInt() != MAGIC
+                    || buf.getInt() != VERSION
+                    || buf.getLong() != sourceLength
+                    || buf.getLong() != sourceChecksum) {
+                return null; // stale or foreign
+            }
+            long payloadChecksum = buf.getLong();
+            CRC32C crc = new CRC32C();
+            crc.update(buf.duplicate());
+            if (crc.getValue() != payloadChecksum) {
+                return null; // truncated or corrupt
+            }
+            return WordPieceTrie.readFrom(buf);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[SecureLogX INIT] Ignoring unreadable vocab snapshot " + snapshot + ": " + e);
+            return null;
+        }
+    }
+
+    private static void write(Path snapshot, WordPieceTrie trie, long sourceLength, long sourceChecksum) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(trie.serializedSize());
+        trie.writeTo(payload);
+        payload.flip();
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putLong(sourceLength).putLong(sourceChecksum).putLong(crc.getValue());
+        header.flip();
+
+        // Write to a temp file and move it into place so readers never see a partial snapshot
+        Path tmp = snapshot.resolveSibling(snapshot.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer[] parts = {header, payload};
+                while (header.hasRemaining() || payload.hasRemaining()) {
+                    ch.write(parts);
+                }
+            }
+            try {
+                Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException atomicUnsupported) {
+                Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static long checksum(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            CRC32C crc = new CRC32C();
+            crc.update(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+            return crc.getValue();
+        }
+    }
+
+    /** Compiles (or refreshes) the snapshot for the given tokenizer.json. */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: VocabSnapshot <path/to/tokenizer.json>");
+            System.exit(2);
+        }
+        Path json = Path.of(args[0].replace("\\", "/"));
+        Files.deleteIfExists(snapshotPath(json));
+        loadOrCompile(json);
+    }
+}
@@ -0,0 +1,200 @@
+package com.securelogx.ner.impl;
+
+import com.securelogx.model.LogEvent;
+import com.securelogx.ner.TokenizedInput;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maps the encoded messages of one batch onto model input rows.
+ * <p>
+ * A message that fits in {@link ONNXDynamicInferenceEngine#MAX_SEQ_LEN} tokens is one plain row.
+ * A longer one is either truncated to one plain row, or (sliding-window mode) split into
+ * overlapping framed windows: {@code [CLS] + content[from, to) + [SEP]}, each at most
+ * {@code MAX_SEQ_LEN} long. Rows of all messages can then be packed into shared ONNX batches,
+ * and {@link #merge} stitches the per-window logits back into one row per message, taking each
+ * token from the window in which it sits most centrally.
+ * <p>
+ * {@code from}/{@code to} are indices into the message's {@link TokenizedInput}; row position
+ * {@code p} of a framed window maps to token {@code from + p - 1}.
+ * <p>
+ * With {@link CandidateWindows}, a long message is instead covered only by framed windows over
+ * its candidate regions; its remaining tokens get label {@code O} (0) in {@link #merge}.
+ * <p>
+ * Predicted labels of all rows live back to back in one flat {@code byte[]} of
+ * {@link #labelSlots()} entries; row {@code r} starts at {@link #rowOffset(int) rowOffset(r)}.
+ */
+final class WindowPlan {
+
+    private int rows;
+    private int[] rowMessage = new int[16];
+    private int[] rowFrom = new int[16];
+    private int[] rowTo = new int[16];
+    private boolean[] rowFramed = new boolean[16];
+    private int[] rowOffset = new int[16];
+    private int labelSlots;
+    private final int[] firstRow;
+    private final int[] rowCount;
+    private final boolean[] partial;
+
+    private WindowPlan(int messages) {
+        this.firstRow = new int[messages];
+        this.rowCount = new int[messages];
+        this.partial = new boolean[messages];
+    }
+
+    static WindowPlan plan(List<TokenizedInput> encoded, int count, boolean sliding, int overlap) {
+        return plan(encoded, null, count, sliding, overlap, null);
+    }
+
+    /**
+     * @param batch      message texts for {@code candidates}; may be null when it is null
+     * @param sliding    split overlong messages into windows instead of truncating them
+     * @param overlap    tokens shared by consecutive windows, so entities on a boundary are seen whole
+     * @param candidates if non-null, long messages are only inferred around their candidate regions
+     */
+    static WindowPlan plan(List<TokenizedInput> encoded, List<LogEvent> batch, int count, boolean sliding,
+                           int overlap, CandidateWindows candidates) {
+        final int max = ONNXDynamicInferenceEngine.MAX_SEQ_LEN;
+        WindowPlan plan = new WindowPlan(count);
+        for (int m = 0; m < count; m++) {
+            TokenizedInput enc = encoded.get(m);
+            int n = enc.length();
+            plan.firstRow[m] = plan.rows;
+            if (candidates != null && candidates.appliesTo(enc)) {
+                final int message = m;
+                plan.partial[m] = true;
+                candidates.regions(batch.get(m).getMessage(), enc,
+                        (from, to) -> plan.addWindows(message, from, to, overlap));
+            } else if (n <= max || !sliding) {
+                plan.addRow(m, 0, Math.min(n, max), false);
+            } else {
+                // Content tokens are 1 .. n-2; each window re-adds [CLS] and [SEP]
+                plan.addWindows(m, 1, n - 1, overlap);
+            }
+            plan.rowCount[m] = plan.rows - plan.firstRow[m];
+        }
+        return plan;
+    }
+
+    /** Covers content tokens {@code [from, to)} with framed windows of at most MAX_SEQ_LEN. */
+    private void addWindows(int message, int from, int to, int overlap) {
+        int width = ONNXDynamicInferenceEngine.MAX_SEQ_LEN - 2;
+        int stride = Math.max(1, width - overlap);
+        while (true) {
+            int end = Math.min(from + width, to);
+            addRow(message, from, end, true);
+            if (end == to) {
+                break;
+            }
+            // Align the last window to the end so it is full-width too
+            from = Math.min(from + stride, to - width);
+        }
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int message(int row) {
+        return rowMessage[row];
+    }
+
+    int firstRow(int message) {
+        return firstRow[message];
+    }
+
+    int rowCount(int message) {
+        return rowCount[message];
+    }
+
+    /** Start of {@code row}'s labels in the flat per-batch label array. */
+    int rowOffset(int row) {
+        return rowOffset[row];
+    }
+
+    /** Total label entries across all rows. */
+    int labelSlots() {
+        return labelSlots;
+    }
+
+    int rowLength(int row) {
+        int len = rowTo[row] - rowFrom[row];
+        return rowFramed[row] ? len + 2 : len;
+    }
+
+    /** Writes the token IDs of {@code row} into {@code dst[offset ..]} and returns the row length. */
+    int fillRow(int row, TokenizedInput enc, LongBuffer dst, int offset) {
+        int[] ids = enc.getInputIds();
+        int from = rowFrom[row];
+        int to = rowTo[row];
+        if (!rowFramed[row]) {
+            for (int t = from; t < to; t++) {
+                dst.put(offset + t - from, ids[t]);
+            }
+            return to - from;
+        }
+        dst.put(offset, ids[0]);                              // [CLS]
+        for (int t = from; t < to; t++) {
+            dst.put(offset + t - from + 1, ids[t]);
+        }
+        dst.put(offset + to - from + 1, ids[enc.length() - 1]); // [SEP]
+        return to - from + 2;
+    }
+
+    /**
+     * Stitches the window labels of {@code message} into {@code dst}, aligned with its
+     * {@link TokenizedInput}. In an overlap, tokens left of the midpoint come from the earlier
+     * window and the rest from the later one, so every token is read away from a window edge.
+     * Tokens of a candidate-windowed message outside every window are {@code O}.
+     *
+     * @param dst at least {@code enc.length()} long
+     * @return number of tokens labelled (shorter than {@code enc.length()} when truncated)
+     */
+    int merge(int message, byte[] rowLabels, TokenizedInput enc, byte[] dst) {
+        int first = firstRow[message];
+        int count = rowCount[message];
+        if (count == 1 && !rowFramed[first]) {
+            int len = rowTo[first] - rowFrom[first];
+            System.arraycopy(rowLabels, rowOffset[first], dst, 0, len);
+            return len;
+        }
+        if (partial[message]) {
+            Arrays.fill(dst, 0, enc.length(), (byte) 0);
+        }
+        for (int k = 0; k < count; k++) {
+            int r = first + k;
+            boolean overlapsPrev = k > 0 && rowFrom[r] < rowTo[r - 1];
+            boolean overlapsNext = k < count - 1 && rowFrom[r + 1] < rowTo[r];
+            int lo = overlapsPrev ? (rowFrom[r] + rowTo[r - 1]) >>> 1 : rowFrom[r];
+            int hi = overlapsNext ? (rowFrom[r + 1] + rowTo[r]) >>> 1 : rowTo[r];
+            System.arraycopy(rowLabels, rowOffset[r] + lo - rowFrom[r] + 1, dst, lo, hi - lo);
+        }
+        if (!partial[message]) {
+            dst[0] = rowLabels[rowOffset[first]];
+            int last = first + count - 1;
+            dst[enc.length() - 1] = rowLabels[rowOffset[last] + rowLength(last) - 1];
+        }
+        return enc.length();
+    }
+
+    private void addRow(int message, int from, int to, boolean framed) {
+        if (rows == rowMessage.length) {
+            int capacity = rows << 1;
+            rowMessage = Arrays.copyOf(rowMessage, capacity);
+            rowFrom = Arrays.copyOf(rowFrom, capacity);
+            rowTo = Arrays.copyOf(rowTo, capacity);
+            rowFramed = Arrays.copyOf(rowFramed, capacity);
+            rowOffset = Arrays.copyOf(rowOffset, capacity);
+        }
+        rowMessage[rows] = message;
+        rowFrom[rows] = from;
+        rowTo[rows] = to;
+        rowFramed[rows] = framed;
+        rowOffset[rows] = labelSlots;
+        labelSlots += rowLength(rows);
+        rows++;
+    }
+}
@@ -0,0 +1,205 @@
+package com.securelogx.ner.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compiled prefix trie over a WordPiece vocabulary.
+ * <p>
+ * The trie has two roots: one holding every vocab entry as-is (word-initial pieces)
+ * and one holding the {@code "##"} continuation pieces with the prefix stripped.
+ * Greedy longest-match is then a single forward scan over the word's chars,
+ * without building candidate substrings.
+ * <p>
+ * Nodes are flattened into parallel primitive arrays: the outgoing edges of node
+ * {@code n} are {@code labels/targets[firstEdge[n] .. firstEdge[n + 1])}, sorted by label.
+ */
+final class WordPieceTrie {
+
+    /** Returned by {@link #longestMatch} when no vocab entry is a prefix of the input. */
+    static final long NO_MATCH = -1L;
+
+    private static final String CONTINUATION_PREFIX = "##";
+    private static final int WORD_ROOT = 0;
+    private static final int SUFFIX_ROOT = 1;
+
+    private final int[] firstEdge;
+    private final char[] labels;
+    private final int[] targets;
+    private final int[] values;
+
+    WordPieceTrie(Map<String, Integer> vocab) {
+        Node wordRoot = new Node();
+        Node suffixRoot = new Node();
+        for (Map.Entry<String, Integer> e : vocab.entrySet()) {
+            String key = e.getKey();
+            int id = e.getValue();
+            if (!key.isEmpty()) {
+                wordRoot.insert(key, 0, id);
+            }
+            if (key.startsWith(CONTINUATION_PREFIX) && key.length() > CONTINUATION_PREFIX.length()) {
+                suffixRoot.insert(key, CONTINUATION_PREFIX.length(), id);
+            }
+        }
+
+        // Breadth-first numbering so the two roots are nodes 0 and 1
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        wordRoot.index = WORD_ROOT;
+        suffixRoot.index = SUFFIX_ROOT;
+        queue.add(wordRoot);
+        queue.add(suffixRoot);
+        int nodeCount = 2;
+        int edgeCount = 0;
+        for (ArrayDeque<Node> pending = new ArrayDeque<>(queue); !pending.isEmpty(); ) {
+            Node n = pending.poll();
+            for (Node child : n.children.values()) {
+                child.index = nodeCount++;
+                pending.add(child);
+            }
+            edgeCount += n.children.size();
+        }
+
+        this.firstEdge = new int[nodeCount + 1];
+        this.labels = new char[edgeCount];
+        this.targets = new int[edgeCount];
+        this.values = new int[nodeCount];
+
+        int edge = 0;
+        while (!queue.isEmpty()) {
+            Node n = queue.poll();
+            firstEdge[n.index] = edge;
+            values[n.index] = n.value;
+            for (Map.Entry<Character, Node> c : n.children.entrySet()) {
+                labels[edge] = c.getKey();
+                targets[edge] = c.getValue().index;
+                edge++;
+                queue.add(c.getValue());
+            }
+        }
+        firstEdge[nodeCount] = edge;
+        // Roots never represent a vocab entry (empty key / bare "##")
+        values[WORD_ROOT] = -1;
+        values[SUFFIX_ROOT] = -1;
+    }
+
+    private WordPieceTrie(int[] firstEdge, char[] labels, int[] targets, int[] values) {
+        this.firstEdge = firstEdge;
+        this.labels = labels;
+        this.targets = targets;
+        this.values = values;
+    }
+
+    /** Bytes needed by {@link #writeTo(ByteBuffer)}. */
+    int serializedSize() {
+        int nodes = values.length;
+        int edges = labels.length;
+        return 8 + 4 * (nodes + 1) + 2 * edges + 4 * edges + 4 * nodes;
+    }
+
+    /** Writes the flattened arrays; the inverse of {@link #readFrom(ByteBuffer)}. */
+    void writeTo(ByteBuffer buf) {
+        buf.putInt(values.length);
+        buf.putInt(labels.length);
+        buf.asIntBuffer().put(firstEdge);
+        buf.position(buf.position() + 4 * firstEdge.length);
+        buf.asCharBuffer().put(labels);
+        buf.position(buf.position() + 2 * labels.length);
+        buf.asIntBuffer().put(targets);
+        buf.position(buf.position() + 4 * targets.length);
+        buf.asIntBuffer().put(values);
+        buf.position(buf.position() + 4 * values.length);
+    }
+
+    /** Bulk-copies a trie out of {@code buf} (typically a mapped snapshot), advancing its position. */
+    static WordPieceTrie readFrom(ByteBuffer buf) {
+        int nodes = buf.getInt();
+        int edges = buf.getInt();
+        int[] firstEdge = new int[nodes + 1];
+        char[] labels = new char[edges];
+        int[] targets = new int[edges];
+        int[] values = new int[nodes];
+        buf.asIntBuffer().get(firstEdge);
+        buf.position(buf.position() + 4 * firstEdge.length);
+        buf.asCharBuffer().get(labels);
+        buf.position(buf.position() + 2 * labels.length);
+        buf.asIntBuffer().get(targets);
+        buf.position(buf.position() + 4 * targets.length);
+        buf.asIntBuffer().get(values);
+        buf.position(buf.position() + 4 * values.length);
+        return new WordPieceTrie(firstEdge, labels, targets, values);
+    }
+
+    /**
+     * Finds the longest vocab entry that is a prefix of {@code text[from, to)}.
+     *
+     * @param continuation match against {@code "##"} pieces instead of word-initial pieces
+     * @return {@link #NO_MATCH}, or the match packed as {@code (tokenId << 32) | matchEnd};
+     *         unpack with {@link #tokenId(long)} and {@link #matchEnd(long)}
+     */
+    long longestMatch(CharSequence text, int from, int to, boolean continuation) {
+        int node = continuation ? SUFFIX_ROOT : WORD_ROOT;
+        long best = NO_MATCH;
+        for (int i = from; i < to; i++) {
+            node = child(node, text.charAt(i));
+            if (node < 0) {
+                break;
+            }
+            int id = values[node];
+            if (id >= 0) {
+                best = ((long) id << 32) | (i + 1);
+            }
+        }
+        return best;
+    }
+
+    /** Exact lookup of a word-initial entry, e.g. {@code "[CLS]"}; returns {@code fallback} when absent. */
+    int get(String key, int fallback) {
+        int node = WORD_ROOT;
+        for (int i = 0; i < key.length() && node >= 0; i++) {
+            node = child(node, key.charAt(i));
+        }
+        return node > WORD_ROOT && values[node] >= 0 ? values[node] : fallback;
+    }
+
+    static int tokenId(long match) {
+        return (int) (match >>> 32);
+    }
+
+    static int matchEnd(long match) {
+        return (int) match;
+    }
+
+    private int child(int node, char c) {
+        int lo = firstEdge[node];
+        int hi = firstEdge[node + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char l = labels[mid];
+            if (l < c) {
+                lo = mid + 1;
+            } else if (l > c) {
+                hi = mid - 1;
+            } else {
+                return targets[mid];
+            }
+        }
+        return -1;
+    }
+
+    /** Mutable build-time node; discarded once the trie is flattened. */
+    private static final class Node {
+        final TreeMap<Character, Node> children = new TreeMap<>();
+        int value = -1;
+        int index;
+
+        void insert(String key, int from, int id) {
+            Node n = this;
+            for (int i = from; i < key.length(); i++) {
+                n = n.children.computeIfAbsent(key.charAt(i), k -> new Node());
+            }
+            n.value = id;
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.sun.source.tree.LiteralTree;
 import com.sun.source.tree.MemberSelectTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.CompilationUnitTree;
+import com.securelogx.ner.impl.EntityType;
+import com.securelogx.ner.impl.PatternDetector;
 import com.sun.source.util.TreePathScanner;
 import com.sun.source.util.Trees;
 
@@ -13,13 +15,21 @@ import javax.lang.model.SourceVersion;
 import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic.Kind;
 import java.util.Set;
-import java.util.regex.Pattern;
+import java.util.StringJoiner;
 
+/**
+ * Fails compilation when a string literal passed to any method other than {@code secure(...)}
+ * contains PII. Which formats count comes from the {@code -AdetectorTypes=SSN,EMAIL,...} option
+ * ({@link EntityType} names, default {@code SSN}).
+ */
 @SupportedAnnotationTypes("*")
 @SupportedSourceVersion(SourceVersion.RELEASE_17)
+@SupportedOptions("detectorTypes")
 public class SecureLogXProcessor extends AbstractProcessor {
+    private static final String DEFAULT_TYPES = "SSN";
+
     private Trees trees;
-    private static final Pattern SSN = Pattern.compile("\\d{3}-\\d{2}-\\d{4}");
+    private PatternDetector detector;
 
     public SecureLogXProcessor() {
         super();
@@ -29,6 +39,13 @@ public class SecureLogXProcessor extends AbstractProcessor {
     public synchronized void init(ProcessingEnvironment env) {
         super.init(env);
         this.trees = Trees.instance(jbUnwrap(ProcessingEnvironment.class, env));
+        String types = env.getOptions().getOrDefault("detectorTypes", DEFAULT_TYPES);
+        try {
+            this.detector = new PatternDetector(PatternDetector.parseTypes(types));
+        } catch (IllegalArgumentException e) {
+            env.getMessager().printMessage(Kind.ERROR, "Unknown entity type in -AdetectorTypes=" + types);
+            this.detector = new PatternDetector(PatternDetector.parseTypes(DEFAULT_TYPES));
+        }
         System.err.println("[Processor] init()");
     }
 
@@ -60,25 +77,42 @@ public class SecureLogXProcessor extends AbstractProcessor {
         public Void visitMethodInvocation(MethodInvocationTree node, Void p) {
             // Print every invocation that has a string‐literal first arg
             ExpressionTree first = node.getArguments().isEmpty() ? null : node.getArguments().get(0);
-            boolean hasSSN = first instanceof LiteralTree
-                    && SSN.matcher(((LiteralTree) first).getValue().toString()).find();
-            if (hasSSN) {
+            String found = first instanceof LiteralTree && ((LiteralTree) first).getValue() instanceof String text
+                    ? types(detector.find(text))
+                    : null;
+            if (found != null) {
                 // Extract method name
                 String methodName = "<unknown>";
                 if (node.getMethodSelect() instanceof MemberSelectTree m) {
                     methodName = m.getIdentifier().toString();
                 }
-                System.err.printf("[Processor] Found SSN literal in call to '%s'%n", methodName);
+                System.err.printf("[Processor] Found %s literal in call to '%s'%n", found, methodName);
 
                 // Only allow if methodName == "secure"
                 if (!"secure".equals(methodName)) {
-                    error(node, "SSN literal in '" + methodName +
-                            "'; only logger.secure(...) may contain SSN literals.");
+                    error(node, found + " literal in '" + methodName +
+                            "'; only logger.secure(...) may contain PII literals.");
                 }
             }
             return super.visitMethodInvocation(node, p);
         }
 
+        /** Distinct entity types of {@code spans} from {@link PatternDetector#find}, e.g. "SSN/EMAIL"; null if none. */
+        private String types(int[] spans) {
+            if (spans.length == 0) {
+                return null;
+            }
+            StringJoiner names = new StringJoiner("/");
+            boolean[] seen = new boolean[EntityType.values().length];
+            for (int s = 2; s < spans.length; s += 3) {
+                if (!seen[spans[s]]) {
+                    seen[spans[s]] = true;
+                    names.add(EntityType.of(spans[s]).name());
+                }
+            }
+            return names.toString();
+        }
+
         private void error(MethodInvocationTree node, String msg) {
             CompilationUnitTree cu = getCurrentPath().getCompilationUnit();
             trees.printMessage(Kind.ERROR, msg, node, cu);
@@ -0,0 +1,279 @@
+package com.securelogx.util;
+
+import com.securelogx.model.LogEvent;
+import com.securelogx.model.LogLevel;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Shared encoder for the SecureLogX line layout:
+ * <pre>
+ * timestamp=2025-05-06T17:09:44.131 level=INFO traceId=ID seq=N message="..."
+ * </pre>
+ * Fields are written straight into a reusable per-thread UTF-8 {@link ByteBuffer}: no
+ * {@code String.format}, no boxing, and no {@code LocalDateTime} per line. The
+ * {@code timestamp=...} prefix is cached per thread and rebuilt only when the second changes
+ * (the millisecond digits are patched in place), level prefixes are pre-encoded.
+ * <p>
+ * In {@code message}, {@code "} and {@code \} are backslash-escaped and newlines, tabs and other
+ * control chars become {@code \n}, {@code \r}, {@code \t} or {@code \}{@code u00XX}, so one event
+ * is always one line; {@link #unescape} reverses it. Timestamps are local time in the system zone,
+ * millisecond precision.
+ */
+public final class LogLineEncoder {
+
+    private static final ThreadLocal<LogLineEncoder> LOCAL = ThreadLocal.withInitial(LogLineEncoder::new);
+
+    private static final byte[] TIMESTAMP = "timestamp=".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[][] LEVELS = new byte[LogLevel.values().length][];
+    private static final byte[] SEQ = " seq=".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MESSAGE = " message=\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final int TIMESTAMP_LENGTH = TIMESTAMP.length + "yyyy-MM-ddTHH:mm:ss.SSS".length();
+
+    static {
+        for (LogLevel level : LogLevel.values()) {
+            LEVELS[level.ordinal()] = (" level=" + level.name() + " traceId=").getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private ByteBuffer buf = ByteBuffer.allocate(1024);
+    private final byte[] timestamp = new byte[TIMESTAMP_LENGTH];
+    private long cachedSecond = Long.MIN_VALUE;
+    private long cachedMillis = Long.MIN_VALUE;
+
+    private LogLineEncoder() {
+        System.arraycopy(TIMESTAMP, 0, timestamp, 0, TIMESTAMP.length);
+    }
+
+    /** The calling thread's encoder. */
+    public static LogLineEncoder get() {
+        return LOCAL.get();
+    }
+
+    /** Line for {@code event} with {@code message} (e.g. its masked message), stamped with the event's time. */
+    public static String line(LogEvent event, CharSequence message) {
+        return get().format(event.getTimestamp(), event.getLevel(), event.getTraceId(), event.getSequenceNumber(), message);
+    }
+
+    /** {@link #encode} as a String. */
+    public String format(long epochMillis, LogLevel level, String traceId, int seq, CharSequence message) {
+        ByteBuffer line = encode(epochMillis, level, traceId, seq, message);
+        return new String(line.array(), 0, line.limit(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes one line (without a line terminator) into this thread's buffer and returns it flipped
+     * for reading. The buffer is reused by the next call on this thread.
+     */
+    public ByteBuffer encode(long epochMillis, LogLevel level, String traceId, int seq, CharSequence message) {
+        buf.clear();
+        put(timestamp(epochMillis));
+        put(LEVELS[level.ordinal()]);
+        putUtf8(traceId != null ? traceId : "null", false);
+        put(SEQ);
+        putInt(seq);
+        put(MESSAGE);
+        putUtf8(message, true);
+        ensure(1);
+        buf.put((byte) '"');
+        return buf.flip();
+    }
+
+    /** Appends {@code message} to {@code out} escaped as in an encoded line. */
+    public static void escape(CharSequence message, StringBuilder out) {
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            String escape = escapeOf(c);
+            if (escape != null) {
+                out.append(escape);
+            } else if (c < 0x20) {
+                out.append("\\u00").append((char) HEX[c >> 4]).append((char) HEX[c & 0xF]);
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    /**
+     * Reverses the message escaping; {@code s} itself if it has no escapes. Backslashes that do not
+     * start an escape written by {@link #escape} (e.g. from a producer that does not escape) are
+     * kept as they are.
+     */
+    public static String unescape(String s) {
+        int i = s.indexOf('\\');
+        if (i < 0) {
+            return s;
+        }
+        StringBuilder out = new StringBuilder(s.length());
+        out.append(s, 0, i);
+        for (; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != '\\' || i + 1 == s.length()) {
+                out.append(c);
+                continue;
+            }
+            char e = s.charAt(i + 1);
+            switch (e) {
+                case 'n': out.append('\n'); i++; break;
+                case 'r': out.append('\r'); i++; break;
+                case 't': out.append('\t'); i++; break;
+                case '"':
+                case '\\': out.append(e); i++; break;
+                case 'u':
+                    int code = hex4(s, i + 2);
+                    if (code >= 0) {
+                        out.append((char) code);
+                        i += 5;
+                        break;
+                    }
+                    out.append(c); // malformed: copied through
+                    break;
+                default: out.append(c); // not an escape this encoder writes: copied through
+            }
+        }
+        return out.toString();
+    }
+
+    /** Value of the 4 hex digits at {@code at}, or -1 if there are not 4. */
+    private static int hex4(String s, int at) {
+        if (at + 4 > s.length()) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = at; i < at + 4; i++) {
+            int digit = Character.digit(s.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    private static String escapeOf(char c) {
+        switch (c) {
+            case '"': return "\\\"";
+            case '\\': return "\\\\";
+            case '\n': return "\\n";
+            case '\r': return "\\r";
+            case '\t': return "\\t";
+            default: return null;
+        }
+    }
+
+    /** {@code timestamp=yyyy-MM-ddTHH:mm:ss.SSS}, rebuilt once per second, patched once per millisecond. */
+    private byte[] timestamp(long epochMillis) {
+        if (epochMillis == cachedMillis) {
+            return timestamp;
+        }
+        long second = Math.floorDiv(epochMillis, 1000);
+        if (second != cachedSecond) {
+            ZoneOffset offset = ZoneId.systemDefault().getRules().getOffset(Instant.ofEpochSecond(second));
+            byte[] dateTime = LocalDateTime.ofEpochSecond(second, 0, offset).toString().getBytes(StandardCharsets.US_ASCII);
+            // LocalDateTime omits ":00" seconds; always write HH:mm:ss
+            int at = TIMESTAMP.length;
+            System.arraycopy(dateTime, 0, timestamp, at, Math.min(dateTime.length, 19));
+            if (dateTime.length == 16) {
+                timestamp[at + 16] = ':';
+                timestamp[at + 17] = '0';
+                timestamp[at + 18] = '0';
+            }
+            timestamp[at + 19] = '.';
+            cachedSecond = second;
+        }
+        int millis = (int) Math.floorMod(epochMillis, 1000);
+        int at = TIMESTAMP_LENGTH - 3;
+        timestamp[at] = (byte) ('0' + millis / 100);
+        timestamp[at + 1] = (byte) ('0' + millis / 10 % 10);
+        timestamp[at + 2] = (byte) ('0' + millis % 10);
+        cachedMillis = epochMillis;
+        return timestamp;
+    }
+
+    private void put(byte[] bytes) {
+        ensure(bytes.length);
+        buf.put(bytes);
+    }
+
+    private void putInt(int value) {
+        ensure(11);
+        if (value < 0) {
+            buf.put((byte) '-');
+            if (value == Integer.MIN_VALUE) {
+                put("2147483648".getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            value = -value;
+        }
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int end = buf.position() + digits;
+        for (int p = end - 1; p >= buf.position(); p--) {
+            buf.put(p, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buf.position(end);
+    }
+
+    /** UTF-8 encodes {@code s}, escaping it as a message if {@code escape}. */
+    private void putUtf8(CharSequence s, boolean escape) {
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            ensure(6);
+            if (c < 0x80) {
+                if (escape && (c < 0x20 || c == '"' || c == '\\')) {
+                    putEscaped(c);
+                } else {
+                    buf.put((byte) c);
+                }
+            } else if (c < 0x800) {
+                buf.put((byte) (0xC0 | (c >> 6)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf.put((byte) (0xF0 | (cp >> 18)));
+                buf.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buf.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buf.put((byte) '?'); // unpaired surrogate
+            } else {
+                buf.put((byte) (0xE0 | (c >> 12)));
+                buf.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private void putEscaped(char c) {
+        buf.put((byte) '\\');
+        switch (c) {
+            case '"': buf.put((byte) '"'); break;
+            case '\\': buf.put((byte) '\\'); break;
+            case '\n': buf.put((byte) 'n'); break;
+            case '\r': buf.put((byte) 'r'); break;
+            case '\t': buf.put((byte) 't'); break;
+            default:
+                buf.put((byte) 'u').put((byte) '0').put((byte) '0');
+                buf.put(HEX[c >> 4]).put(HEX[c & 0xF]);
+        }
+    }
+
+    private void ensure(int bytes) {
+        if (buf.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buf.capacity() << 1, buf.position() + bytes));
+            buf.flip();
+            grown.put(buf);
+            buf = grown;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.securelogx.processor;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compile-time PII check for string literals, kept inside the processor module so the processor
+ * does not depend on securelogx-core.
+ * <p>
+ * It recognizes the same formats as the runtime {@code PatternDetector}, each a word-bounded regex
+ * plus the checks a regex cannot express: Luhn for CARD and NPI, octets of at most 255 for IPV4.
+ * The runtime detector is a one-pass automaton because it sees every log line. This one sees each
+ * literal once per compilation, so plain regexes are fast enough.
+ */
+final class LiteralPiiDetector {
+
+    /** Detectable formats; names match the runtime {@code EntityType}s. */
+    enum Format {
+        SSN("[0-9]{3}-[0-9]{2}-[0-9]{4}"),
+        EMAIL("[A-Za-z0-9][A-Za-z0-9._%+-]*@[A-Za-z0-9-]+(?:\\.[A-Za-z0-9-]+)*\\.[A-Za-z]{2,}"),
+        PHONE("(?:\\+1[ .-]?)?(?:\\([0-9]{3}\\) ?|[0-9]{3}[ .-])[0-9]{3}[ .-][0-9]{4}"),
+        CARD("[2-6][0-9]{12,18}|[2-6][0-9]*(?:([ -])[0-9]+)(?:\\1[0-9]+)*"),
+        NPI("[12][0-9]{9}"),
+        IPV4("(?<![0-9]\\.)[0-9]{1,3}(?:\\.[0-9]{1,3}){3}(?!\\.[0-9])");
+
+        private final Pattern pattern;
+
+        Format(String regex) {
+            this.pattern = Pattern.compile("(?<![\\p{L}\\p{Nd}])(?:" + regex + ")(?![\\p{L}\\p{Nd}])");
+        }
+
+        /** Checks of a regex match that the regex cannot express. */
+        boolean accepts(String match) {
+            switch (this) {
+                case CARD: {
+                    String digits = match.replaceAll("[ -]", "");
+                    return digits.length() >= 13 && digits.length() <= 19 && luhn(digits, 0);
+                }
+                case NPI:
+                    return luhn(match, 24); // 24: Luhn contribution of the 80840 prefix
+                case IPV4:
+                    for (String octet : match.split("\\.")) {
+                        if (Integer.parseInt(octet) > 255) {
+                            return false;
+                        }
+                    }
+                    return true;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    private final Set<Format> formats;
+
+    LiteralPiiDetector(Set<Format> formats) {
+        this.formats = formats;
+    }
+
+    /**
+     * Parses a comma-separated list of format names, e.g. {@code "SSN,EMAIL"}.
+     *
+     * @throws IllegalArgumentException for an unknown name
+     */
+    static LiteralPiiDetector parse(String csv) {
+        Set<Format> formats = EnumSet.noneOf(Format.class);
+        for (String raw : csv.split(",")) {
+            String name = raw.trim();
+            if (!name.isEmpty()) {
+                formats.add(Format.valueOf(name.toUpperCase(Locale.ROOT)));
+            }
+        }
+        return new LiteralPiiDetector(formats);
+    }
+
+    /** True if {@code text} contains any of the formats. */
+    boolean containsAny(String text) {
+        for (Format format : formats) {
+            Matcher m = format.pattern.matcher(text);
+            while (m.find()) {
+                if (format.accepts(m.group())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Luhn check over the digits of {@code digits}, plus {@code offset}. */
+    private static boolean luhn(String digits, int offset) {
+        int sum = offset;
+        for (int k = 0; k < digits.length(); k++) {
+            int d = digits.charAt(digits.length() - 1 - k) - '0';
+            if ((k & 1) == 1) {
+                d = d * 2 > 9 ? d * 2 - 9 : d * 2;
+            }
+            sum += d;
+        }
+        return sum % 10 == 0;
+    }
+}
@@ -22,19 +22,25 @@ import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Set;
-import java.util.regex.Pattern;
 
+/**
+ * Fails compilation when a string literal passed to any method other than {@code secure(...)}
+ * contains PII. Which formats count comes from the {@code -AdetectorTypes=SSN,EMAIL,...} option
+ * ({@link LiteralPiiDetector.Format} names, default {@code SSN}).
+ */
 @SupportedAnnotationTypes("*")
 @SupportedSourceVersion(SourceVersion.RELEASE_17)
+@SupportedOptions({"enableNer", "detectorTypes"})
 public class SecureLogXProcessor extends AbstractProcessor {
+    private static final String DEFAULT_TYPES = "SSN";
+
     private Trees trees;
+    private LiteralPiiDetector detector;
     private boolean nerEnabled;
     private OrtEnvironment env;
     private OrtSession session;
     private HuggingFaceTokenizer tokenizer;
 
-    private static final Pattern SSN_PATTERN =
-            Pattern.compile("\\d{3}-\\d{2}-\\d{4}");
     private static final float CONFIDENCE_THRESHOLD = 0.85f;
 
     @Override
@@ -47,6 +53,14 @@ public class SecureLogXProcessor extends AbstractProcessor {
         String prop = processingEnv.getOptions().get("enableNer");
         nerEnabled = prop == null || Boolean.parseBoolean(prop);
 
+        String types = processingEnv.getOptions().getOrDefault("detectorTypes", DEFAULT_TYPES);
+        try {
+            this.detector = LiteralPiiDetector.parse(types);
+        } catch (IllegalArgumentException e) {
+            processingEnv.getMessager().printMessage(Kind.ERROR, "Unknown entity type in -AdetectorTypes=" + types);
+            this.detector = LiteralPiiDetector.parse(DEFAULT_TYPES);
+        }
+
         if (false) {
             try {
                 // Initialize ONNX Runtime
@@ -109,7 +123,7 @@ public class SecureLogXProcessor extends AbstractProcessor {
                 return super.visitMethodInvocation(node, unused);
             }
 
-            // 2) Regex-based SSN check (always runs)
+            // 2) Deterministic PII check for the -AdetectorTypes formats (always runs)
             if (!node.getArguments().isEmpty() &&
                     node.getArguments().get(0).getKind() ==
                             Tree.Kind.STRING_LITERAL) {
@@ -117,10 +131,10 @@ public class SecureLogXProcessor extends AbstractProcessor {
                 LiteralTree lit = (LiteralTree) node.getArguments().get(0);
                 Object val = lit.getValue();
                 if (val instanceof String text &&
-                        SSN_PATTERN.matcher(text).find()) {
+                        detector.containsAny(text)) {
                     error(node,
-                            "SSN literal in '" + selectExpr +
-                                    "'; only secure() may contain SSN literals.");
+                            "PII literal in '" + selectExpr +
+                                    "'; only secure() may contain PII literals.");
                 }
             }
 